@@ -0,0 +1,52 @@
+package com.tomallton.neuralnetwork.jmh;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Fails if a single prediction allocates memory once warmed up. Runs {@link PredictBenchmark#predict} with the GC
+ * profiler and checks {@code gc.alloc.rate.norm} for every network shape. Bound to the verify phase of the jmh module.
+ */
+public class AllocationCheck {
+    // the smallest object is 16 bytes, so anything less is profiler noise spread over millions of operations
+    private static final double MAX_BYTES_PER_OPERATION = 1;
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PredictBenchmark.class.getName() + ".predict$")
+                .param("width", "32", "256")
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(2)
+                .measurementTime(TimeValue.milliseconds(500))
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+        if (results.isEmpty()) {
+            throw new IllegalStateException("No benchmarks were run");
+        }
+
+        for (RunResult result : results) {
+            Result<?> allocated = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            BenchmarkParams params = result.getParams();
+            String shape = "width=" + params.getParam("width") + " depth=" + params.getParam("depth") + " activation=" + params.getParam("activationFunction");
+
+            if (allocated == null) {
+                throw new IllegalStateException("No allocation rate was measured for " + shape);
+            }
+            if (allocated.getScore() >= MAX_BYTES_PER_OPERATION) {
+                throw new IllegalStateException(String.format("predictInto allocates %.1f bytes per prediction for %s", allocated.getScore(), shape));
+            }
+        }
+    }
+}
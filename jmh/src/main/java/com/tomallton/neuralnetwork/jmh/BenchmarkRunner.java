@@ -0,0 +1,22 @@
+package com.tomallton.neuralnetwork.jmh;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the benchmarks like JMH's own main class, but with the GC profiler on unless another profiler was chosen, so
+ * the bytes allocated per operation are always reported next to the time.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        if (!Arrays.asList(args).contains("-prof")) {
+            String[] profiledArgs = Arrays.copyOf(args, args.length + 2);
+            profiledArgs[args.length] = "-prof";
+            profiledArgs[args.length + 1] = "gc";
+            args = profiledArgs;
+        }
+        Main.main(args);
+    }
+}
@@ -0,0 +1,87 @@
+package com.tomallton.neuralnetwork.jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tomallton.neuralnetwork.ActivationFunction;
+import com.tomallton.neuralnetwork.util.MathUtils;
+
+/**
+ * The {@link MathUtils} kernels on vectors of {@code width} values and square matrices of {@code width} rows, run
+ * with whichever kernels {@link MathUtils#getKernels()} picked for this JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class KernelsBenchmark {
+
+    @Param({ "32", "256", "1024" })
+    int width;
+
+    private double[] a, b, c;
+
+    @State(Scope.Thread)
+    public static class Activation {
+
+        @Param({ "RELU", "SIGMOID", "TANH" })
+        ActivationFunction activationFunction;
+    }
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(Networks.SEED);
+        a = Networks.random(width * width, random);
+        b = Networks.random(width * width, random);
+        c = new double[width * width];
+    }
+
+    @Benchmark
+    public double dot() {
+        return MathUtils.dot(a, 0, b, 0, width);
+    }
+
+    @Benchmark
+    public double[] axpy() {
+        MathUtils.axpy(0.5, a, 0, c, 0, width);
+        return c;
+    }
+
+    @Benchmark
+    public double[] multiply() {
+        MathUtils.multiply(width, width, width, a, 0, width, b, 0, width, c, 0, width);
+        return c;
+    }
+
+    @Benchmark
+    public double[] multiplyTransposed() {
+        MathUtils.multiplyTransposed(width, width, width, a, 0, width, b, 0, width, c, 0, width);
+        return c;
+    }
+
+    @Benchmark
+    public double[] transposeMultiply() {
+        MathUtils.transposeMultiply(width, width, width, a, 0, width, b, 0, width, c, 0, width);
+        return c;
+    }
+
+    @Benchmark
+    public double[] activation(Activation activation) {
+        // overwrites the inputs, which only changes the values and not the work done
+        return activation.activationFunction.apply(c, 0, width);
+    }
+}
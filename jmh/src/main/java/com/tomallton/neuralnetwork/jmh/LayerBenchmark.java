@@ -0,0 +1,57 @@
+package com.tomallton.neuralnetwork.jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tomallton.neuralnetwork.ActivationFunction;
+import com.tomallton.neuralnetwork.Layer;
+import com.tomallton.neuralnetwork.NeuralNetwork;
+
+/**
+ * The forward pass of a single layer into preallocated buffers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class LayerBenchmark {
+
+    @Param({ "32", "256", "1024" })
+    int width;
+
+    @Param({ "RELU", "SIGMOID", "TANH" })
+    ActivationFunction activationFunction;
+
+    private Layer layer;
+    private double[] input, outputBeforeActivation, output;
+
+    @Setup
+    public void setUp() {
+        layer = new Layer(width, activationFunction);
+        // connects the layer to an input of its own width
+        new NeuralNetwork(Networks.SEED, layer);
+
+        input = Networks.random(width, new SplittableRandom(Networks.SEED));
+        outputBeforeActivation = new double[width];
+        output = new double[width];
+    }
+
+    @Benchmark
+    public double[] apply() {
+        return layer.apply(input, outputBeforeActivation, output);
+    }
+}
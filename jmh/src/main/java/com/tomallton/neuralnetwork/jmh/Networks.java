@@ -0,0 +1,32 @@
+package com.tomallton.neuralnetwork.jmh;
+
+import java.util.SplittableRandom;
+
+import com.tomallton.neuralnetwork.ActivationFunction;
+import com.tomallton.neuralnetwork.Layer;
+import com.tomallton.neuralnetwork.NeuralNetwork;
+import com.tomallton.neuralnetwork.util.MathUtils;
+
+final class Networks {
+    static final long SEED = 1;
+
+    private Networks() {
+    }
+
+    /**
+     * Creates a network of {@code depth} layers of {@code width} neurons, the first taking the input, followed by a
+     * single output.
+     */
+    static NeuralNetwork create(int width, int depth, ActivationFunction activationFunction) {
+        Layer[] layers = new Layer[depth + 1];
+        for (int i = 0; i < depth; i++) {
+            layers[i] = new Layer(width, activationFunction);
+        }
+        layers[depth] = new Layer(1);
+        return new NeuralNetwork(SEED, layers);
+    }
+
+    static double[] random(int length, SplittableRandom random) {
+        return MathUtils.generate(length, random::nextDouble);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tomallton.neuralnetwork.jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tomallton.neuralnetwork.ActivationFunction;
+import com.tomallton.neuralnetwork.BatchWorkspace;
+import com.tomallton.neuralnetwork.NeuralNetwork;
+
+/**
+ * Single and batched predictions. Each benchmark is only run over the parameters of the states it uses, so single
+ * predictions are not repeated for every batch size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class PredictBenchmark {
+
+    @State(Scope.Thread)
+    public static class Network {
+
+        @Param({ "32", "256", "1024" })
+        int width;
+
+        @Param({ "1", "3" })
+        int depth;
+
+        @Param({ "RELU", "SIGMOID", "TANH" })
+        ActivationFunction activationFunction;
+
+        NeuralNetwork model;
+        double[] x, out;
+
+        @Setup
+        public void setUp() {
+            model = Networks.create(width, depth, activationFunction);
+            x = Networks.random(width, new SplittableRandom(Networks.SEED));
+            out = new double[model.getOutputSize()];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        @Param({ "1", "32", "256" })
+        int batchSize;
+
+        BatchWorkspace workspace;
+        double[] X;
+
+        @Setup
+        public void setUp(Network network) {
+            workspace = new BatchWorkspace(network.model, batchSize);
+            X = Networks.random(batchSize * network.width, new SplittableRandom(Networks.SEED));
+        }
+    }
+
+    @Benchmark
+    public double[] predict(Network network) {
+        return network.model.predictInto(network.x, network.out);
+    }
+
+    @Benchmark
+    public double[] predictBatch(Network network, Batch batch) {
+        return network.model.predict(batch.X, batch.batchSize, batch.workspace);
+    }
+}
@@ -0,0 +1,79 @@
+package com.tomallton.neuralnetwork.jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tomallton.neuralnetwork.ActivationFunction;
+import com.tomallton.neuralnetwork.NeuralNetwork;
+
+/**
+ * One epoch of training over a fixed set of examples, one example at a time and in mini-batches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class TrainBenchmark {
+    private static final int EXAMPLES = 256;
+    // small enough that the weights stay in range over millions of epochs
+    private static final double LEARNING_RATE = 1e-6;
+
+    @State(Scope.Thread)
+    public static class Network {
+
+        @Param({ "32", "256", "1024" })
+        int width;
+
+        @Param({ "1", "3" })
+        int depth;
+
+        @Param({ "RELU", "SIGMOID", "TANH" })
+        ActivationFunction activationFunction;
+
+        NeuralNetwork model;
+        double[][] X, y;
+
+        @Setup
+        public void setUp() {
+            model = Networks.create(width, depth, activationFunction);
+
+            SplittableRandom random = new SplittableRandom(Networks.SEED);
+            X = new double[EXAMPLES][];
+            y = new double[EXAMPLES][];
+            for (int i = 0; i < EXAMPLES; i++) {
+                X[i] = Networks.random(width, random);
+                y[i] = new double[] { X[i][0] };
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        @Param({ "1", "32", "256" })
+        int batchSize;
+    }
+
+    @Benchmark
+    public double[] epoch(Network network) {
+        return network.model.train(network.X, network.y, LEARNING_RATE);
+    }
+
+    @Benchmark
+    public double[] epochBatches(Network network, Batch batch) {
+        return network.model.trainBatches(network.X, network.y, LEARNING_RATE, batch.batchSize);
+    }
+}
@@ -1,35 +1,65 @@
 package com.tomallton.neuralnetwork;
 
-import java.util.function.Function;
+import java.util.function.DoubleUnaryOperator;
 
+import com.tomallton.neuralnetwork.util.MathUtils;
 import com.tomallton.neuralnetwork.util.StringUtils;
 
+// saved models refer to constants by ordinal, so new constants must be added at the end
 public enum ActivationFunction implements DerivableFunction {
     NONE(x -> x, x -> 1D),
     RELU(x -> Math.max(x, 0), x -> x > 0 ? 1D : 0D),
     LEAKY_RELU(x -> Math.max(0.1 * x, x), x -> x > 0 ? 1D : 0.1D),
-    SIGMOID(x -> 1 / (1 + Math.pow(Math.E, -x)), x -> {
-        double fx = 1 / (1 + Math.pow(Math.E, -x));
+    SIGMOID(x -> sigmoid(x), x -> {
+        double fx = sigmoid(x);
         return fx * (1 - fx);
     }),
-    TANH(x -> Math.tanh(x), x -> 1 / Math.pow(Math.cosh(x), 2)),
+    TANH(x -> Math.tanh(x), x -> {
+        double fx = Math.tanh(x);
+        return 1 - fx * fx;
+    }),
     STEP(x -> x > 0 ? 1D : 0D, x -> 0D);
 
-    private final Function<Double, Double> function, derivative;
+    private final DoubleUnaryOperator function, derivative;
 
-    ActivationFunction(Function<Double, Double> function, Function<Double, Double> derivative) {
+    ActivationFunction(DoubleUnaryOperator function, DoubleUnaryOperator derivative) {
         this.function = function;
         this.derivative = derivative;
     }
 
     @Override
-    public Double apply(Double x) {
-        return function.apply(x);
+    public double applyAsDouble(double x) {
+        return function.applyAsDouble(x);
+    }
+
+    @Override
+    public double derivative(double x) {
+        return derivative.applyAsDouble(x);
     }
 
     @Override
-    public Double derivative(Double x) {
-        return derivative.apply(x);
+    public double[] apply(double[] x, int from, int to) {
+        // built-in functions with a bulk kernel
+        switch (this) {
+        case RELU:
+            MathUtils.getKernels().relu(x, from, to);
+            return x;
+        case LEAKY_RELU:
+            MathUtils.getKernels().leakyRelu(x, from, to, 0.1);
+            return x;
+        case SIGMOID:
+            MathUtils.getKernels().sigmoid(x, from, to);
+            return x;
+        case TANH:
+            MathUtils.getKernels().tanh(x, from, to);
+            return x;
+        default:
+            return DerivableFunction.super.apply(x, from, to);
+        }
+    }
+
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
     }
 
     @Override
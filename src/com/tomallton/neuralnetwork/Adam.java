@@ -0,0 +1,71 @@
+package com.tomallton.neuralnetwork;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Adam, which steps each weight by a decaying mean of its gradients divided by a decaying root mean square of them,
+ * both corrected for their bias towards zero in early steps.
+ */
+public class Adam implements Optimizer {
+    private final double beta1, beta2, epsilon;
+
+    private double[][] means, meanSquares;
+    private int steps;
+    private double stepCorrection, epsilonCorrection;
+
+    public Adam() {
+        this(0.9, 0.999, 1e-8);
+    }
+
+    public Adam(double beta1, double beta2, double epsilon) {
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public void beginStep(Layer[] layers) {
+        means = Optimizer.state(means, layers);
+        meanSquares = Optimizer.state(meanSquares, layers);
+
+        // bias corrections folded into the step size and epsilon rather than applied to every weight
+        steps++;
+        double meanSquareCorrection = Math.sqrt(1 - Math.pow(beta2, steps));
+        stepCorrection = meanSquareCorrection / (1 - Math.pow(beta1, steps));
+        epsilonCorrection = epsilon * meanSquareCorrection;
+    }
+
+    @Override
+    public void update(int layer, double[] weights, int weightsOffset, double[] gradients, int from, int to, double learningRate, int examples) {
+        double[] mean = means[layer], meanSquare = meanSquares[layer];
+        double rate = learningRate * stepCorrection;
+
+        for (int i = from; i < to; i++) {
+            double gradient = gradients[i] / examples;
+            mean[i] = beta1 * mean[i] + (1 - beta1) * gradient;
+            meanSquare[i] = beta2 * meanSquare[i] + (1 - beta2) * gradient * gradient;
+            weights[i - weightsOffset] -= rate * mean[i] / (Math.sqrt(meanSquare[i]) + epsilonCorrection);
+        }
+    }
+
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        out.writeInt(steps);
+        Optimizer.writeState(out, means);
+        Optimizer.writeState(out, meanSquares);
+    }
+
+    @Override
+    public void loadState(DataInput in, Layer[] layers) throws IOException {
+        steps = in.readInt();
+        means = Optimizer.readState(in, layers);
+        meanSquares = Optimizer.readState(in, layers);
+    }
+
+    @Override
+    public String toString() {
+        return "Adam{beta1=" + beta1 + ", beta2=" + beta2 + ", epsilon=" + epsilon + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.tomallton.neuralnetwork;
+
+/**
+ * Preallocated buffers for forward and backward passes over batches of up to a fixed number of examples. Each buffer is
+ * a row-major matrix with one row per example in the batch. A workspace must only be used by one thread at a time.
+ */
+public class BatchWorkspace {
+    private final int capacity;
+    private final double[] input, target, errors;
+    private final double[][] outputsBeforeActivation, outputs, derivatives, deltas;
+
+    public BatchWorkspace(NeuralNetwork network, int capacity) {
+        this(capacity, network.getLayers());
+    }
+
+    public BatchWorkspace(int capacity, Layer... layers) {
+        this.capacity = capacity;
+        this.input = new double[capacity * layers[0].getInputSize()];
+        this.target = new double[capacity * layers[layers.length - 1].getOutputSize()];
+        this.errors = new double[capacity];
+
+        this.outputsBeforeActivation = new double[layers.length][];
+        this.outputs = new double[layers.length][];
+        this.derivatives = new double[layers.length][];
+        this.deltas = new double[layers.length][];
+
+        for (int i = 0; i < layers.length; i++) {
+            int size = capacity * layers[i].getOutputSize();
+            outputsBeforeActivation[i] = new double[size];
+            outputs[i] = new double[size];
+            derivatives[i] = new double[size];
+            deltas[i] = new double[size];
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double[] getInput() {
+        return input;
+    }
+
+    public double[] getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets the error of each example in the last batch passed backwards.
+     */
+    public double[] getErrors() {
+        return errors;
+    }
+
+    public double[] getOutputBeforeActivation(int layer) {
+        return outputsBeforeActivation[layer];
+    }
+
+    public double[] getOutput(int layer) {
+        return outputs[layer];
+    }
+
+    double[] getDerivatives(int layer) {
+        return derivatives[layer];
+    }
+
+    /**
+     * Gets the gradients of the error with respect to the outputs of a layer before activation.
+     */
+    double[] getDeltas(int layer) {
+        return deltas[layer];
+    }
+}
\ No newline at end of file
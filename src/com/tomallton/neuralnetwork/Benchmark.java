@@ -0,0 +1,729 @@
+package com.tomallton.neuralnetwork;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import com.tomallton.neuralnetwork.data.Batch;
+import com.tomallton.neuralnetwork.data.CachedDataset;
+import com.tomallton.neuralnetwork.data.CsvReader;
+import com.tomallton.neuralnetwork.data.DatasetCache;
+import com.tomallton.neuralnetwork.data.DatasetView;
+import com.tomallton.neuralnetwork.serving.InferenceServer;
+import com.tomallton.neuralnetwork.serving.ScoringPipeline;
+import com.tomallton.neuralnetwork.util.Kernels;
+import com.tomallton.neuralnetwork.util.MathUtils;
+import com.tomallton.neuralnetwork.util.Pair;
+
+public class Benchmark {
+    private static final int WARMUP_ITERATIONS = 5, ITERATIONS = 20;
+
+    // results of benchmarked operations, kept so they cannot be optimised away
+    private static volatile double sink;
+    private static final long WARMUP_NANOS = 300_000_000, MEASUREMENT_NANOS = 1_000_000_000;
+
+    /**
+     * Runs every benchmark, or with an argument only the hot path benchmarks whose names contain it.
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            hotPathBenchmark(args[0]);
+            return;
+        }
+        hotPathBenchmark("");
+        layerBenchmark();
+        concurrentPredictionBenchmark();
+        inferenceServerBenchmark();
+        scoringPipelineBenchmark();
+        miniBatchBenchmark();
+        optimizerBenchmark();
+        gridSearchBenchmark();
+        instrumentationBenchmark();
+        parallelTrainingBenchmark();
+        hogwildBenchmark();
+        datasetCacheBenchmark();
+        initializationBenchmark();
+        datasetViewBenchmark();
+        sparseInputBenchmark();
+        floatBenchmark();
+        offHeapBenchmark();
+        kernelsBenchmark();
+        quantizationBenchmark();
+    }
+
+    /**
+     * Quickly checks the time and memory allocated per operation on the forward, backward and training paths for one
+     * network shape. The jmh module benchmarks them properly across layer widths, depths, batch sizes and activation
+     * functions.
+     */
+    public static void hotPathBenchmark(String filter) {
+        int width = 256, depth = 2, batchSize = 32;
+        double[] a = MathUtils.generate(width * width, Math::random), b = MathUtils.generate(width * width, Math::random), c = new double[width * width];
+
+        measure(filter, "MathUtils.dot", () -> MathUtils.dot(a, 0, b, 0, width));
+        measure(filter, "MathUtils.multiply", () -> MathUtils.multiply(width, width, width, a, 0, width, b, 0, width, c, 0, width));
+
+        Layer layer = new Layer(width, ActivationFunction.SIGMOID);
+        new NeuralNetwork(layer);
+        double[] input = MathUtils.generate(width, Math::random);
+        double[] outputBeforeActivation = new double[width], output = new double[width];
+
+        measure(filter, "Layer.apply", () -> layer.apply(input, outputBeforeActivation, output));
+
+        NeuralNetwork model = network(width, depth, ActivationFunction.SIGMOID);
+        double[][] X = new double[256][];
+        double[][] y = new double[X.length][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(width, Math::random);
+            y[i] = new double[] { X[i][0] };
+        }
+        double[] out = new double[1];
+        BatchWorkspace workspace = new BatchWorkspace(model, batchSize);
+        Gradients gradients = new Gradients(model);
+
+        measure(filter, "NeuralNetwork.predict single", () -> model.predictInto(X[0], out));
+        measure(filter, "NeuralNetwork.train epoch per-example", () -> model.train(X, y, 1e-6));
+        measure(filter, "NeuralNetwork.train epoch batch=" + batchSize, () -> model.trainBatches(X, y, 1e-6, workspace, gradients));
+    }
+
+    // compares the flat layout with the jagged one getWeights still returns
+    @SuppressWarnings("deprecation")
+    public static void layerBenchmark() {
+        for (int neurons : new int[] { 1024, 2048, 4096 }) {
+            Layer layer = new Layer(neurons);
+            new NeuralNetwork(layer);
+
+            double[][] jaggedWeights = layer.getWeights();
+            double[] input = MathUtils.generate(neurons, Math::random);
+
+            double jagged = time(() -> jaggedApply(jaggedWeights, input));
+            double flat = time(() -> layer.apply(input));
+
+            System.out.println(String.format("Layer.apply %d x %d: jagged %.3f ms, flat %.3f ms (%.1fx)", neurons, neurons, jagged, flat, jagged / flat));
+        }
+    }
+
+    public static void concurrentPredictionBenchmark() {
+        FrozenNeuralNetwork model = new NeuralNetwork(new Layer(256, ActivationFunction.RELU), new Layer(256, ActivationFunction.RELU), new Layer(10)).freeze();
+        double[] x = MathUtils.generate(model.getInputSize(), Math::random);
+        int predictionsPerThread = 20_000;
+
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+
+            for (int thread = 0; thread < threads; thread++) {
+                executor.execute(() -> {
+                    double[] out = new double[model.getOutputSize()];
+                    for (int i = 0; i < predictionsPerThread; i++) {
+                        model.predictInto(x, out);
+                    }
+                });
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("FrozenNeuralNetwork.predictInto %d threads: %.0f predictions/s", threads, threads * predictionsPerThread / seconds));
+        }
+    }
+
+    /**
+     * Compares calling predict once per request with coalescing requests through an inference server, with many client
+     * threads each waiting on one request at a time.
+     */
+    public static void inferenceServerBenchmark() {
+        FrozenNeuralNetwork model = new NeuralNetwork(new Layer(256, ActivationFunction.RELU), new Layer(256, ActivationFunction.RELU), new Layer(10)).freeze();
+        double[] x = MathUtils.generate(model.getInputSize(), Math::random);
+        int clients = 64, requestsPerClient = 2_000;
+
+        System.out.println(String.format("predict per request, %d clients: %.0f predictions/s", clients, clients * requestsPerClient / clientSeconds(clients, () -> {
+            for (int i = 0; i < requestsPerClient; i++) {
+                model.predict(x);
+            }
+        })));
+
+        for (int maxBatchSize : new int[] { 8, 32, 64 }) {
+            try (InferenceServer server = new InferenceServer(model, maxBatchSize, 200, TimeUnit.MICROSECONDS)) {
+                double seconds = clientSeconds(clients, () -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        server.submit(x).join();
+                    }
+                });
+                System.out.println(String.format("InferenceServer maxBatchSize=%d, %d clients: %.0f predictions/s, %s", maxBatchSize, clients, clients * requestsPerClient / seconds,
+                        server.getMetrics()));
+            }
+        }
+    }
+
+    /**
+     * Compares the scoring pipeline with starting a thread per row, on generated rows written to a sink that blocks for
+     * a simulated I/O delay.
+     */
+    public static void scoringPipelineBenchmark() {
+        FrozenNeuralNetwork model = new NeuralNetwork(new Layer(64, ActivationFunction.RELU), new Layer(64, ActivationFunction.RELU), new Layer(1)).freeze();
+        int rows = 100_000;
+        long writeDelay = TimeUnit.MICROSECONDS.toNanos(50);
+
+        double threadPerRow = seconds(() -> {
+            SplittableRandom random = new SplittableRandom(0);
+            Thread[] threads = new Thread[rows];
+            for (int i = 0; i < rows; i++) {
+                threads[i] = new Thread(() -> {
+                    double[] x;
+                    synchronized (random) {
+                        x = random.doubles(model.getInputSize()).toArray();
+                    }
+                    model.predict(x);
+                    LockSupport.parkNanos(writeDelay);
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        System.out.println(String.format("Thread per row, %d rows: %.0f rows/s", rows, rows / threadPerRow));
+
+        for (int sinkThreads : new int[] { 1, 16, 256 }) {
+            double pipeline = seconds(() -> {
+                SplittableRandom random = new SplittableRandom(0);
+                AtomicInteger read = new AtomicInteger();
+                try {
+                    new ScoringPipeline(model, Runtime.getRuntime().availableProcessors(), sinkThreads, 1024)
+                            .run(() -> read.getAndIncrement() < rows ? random.doubles(model.getInputSize()).toArray() : null, (index, x, y) -> LockSupport.parkNanos(writeDelay));
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            System.out.println(String.format("ScoringPipeline %d sink threads (virtual: %b), %d rows: %.0f rows/s", sinkThreads, ScoringPipeline.usesVirtualThreads(), rows,
+                    rows / pipeline));
+        }
+    }
+
+    /**
+     * Gets the time in seconds taken to run a task once.
+     */
+    private static double seconds(Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private static double clientSeconds(int clients, Runnable client) {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < clients; i++) {
+            executor.execute(client);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    public static void miniBatchBenchmark() {
+        double[][] X = new double[100_000][];
+        double[][] y = new double[X.length][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(64, Math::random);
+            y[i] = new double[] { X[i][0] > 0.5 ? 1 : 0 };
+        }
+
+        NeuralNetwork model = new NeuralNetwork(new Layer(64, ActivationFunction.RELU), new Layer(64, ActivationFunction.RELU), new Layer(1));
+
+        long start = System.nanoTime();
+        model.train(X, y, 0.001);
+        double perExample = (System.nanoTime() - start) / 1e6;
+
+        for (int batchSize : new int[] { 16, 64, 256 }) {
+            // warm up on one epoch before timing the next
+            model.trainBatches(X, y, 0.001, batchSize);
+
+            start = System.nanoTime();
+            model.trainBatches(X, y, 0.001, batchSize);
+            double batched = (System.nanoTime() - start) / 1e6;
+
+            System.out.println(String.format("Epoch of %d examples: per-example %.0f ms, batch size %d %.0f ms (%.1fx)", X.length, perExample, batchSize, batched, perExample / batched));
+        }
+    }
+
+    /**
+     * Measures the epochs and training time each optimizer takes to reach a test accuracy on the cancer dataset.
+     */
+    public static void optimizerBenchmark() {
+        Pair<double[][], double[][]> data = Test.loadCancerData();
+        // a fresh optimizer per network, as its state belongs to the network
+        List<Supplier<Optimizer>> optimizers = List.of(SGD::new, Momentum::new, RMSProp::new, Adam::new);
+        double[] learningRates = { 0.5, 0.1, 0.005, 0.01 };
+        double targetAccuracy = 0.96;
+        int trials = 5, maxEpochs = 500;
+
+        for (int i = 0; i < optimizers.size(); i++) {
+            int reached = 0;
+            long epochs = 0, nanos = 0;
+
+            for (int trial = 0; trial < trials; trial++) {
+                Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> trainTestSplit = MathUtils.trainTestSplit(data.getLeft(), data.getRight());
+                double[][] XTrain = trainTestSplit.getLeft().getLeft(), yTrain = trainTestSplit.getLeft().getRight();
+                NeuralNetwork model = new NeuralNetwork(new Layer(XTrain[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+                Optimizer optimizer = optimizers.get(i).get();
+
+                for (int epoch = 1; epoch <= maxEpochs; epoch++) {
+                    long start = System.nanoTime();
+                    model.trainBatches(XTrain, yTrain, learningRates[i], 32, optimizer);
+                    nanos += System.nanoTime() - start;
+
+                    double[][] yPredict = MathUtils.apply(model.predict(trainTestSplit.getRight().getLeft()), a -> a >= 0.5 ? 1D : 0D);
+                    if (MathUtils.accuracy(yPredict, trainTestSplit.getRight().getRight()) >= targetAccuracy) {
+                        reached++;
+                        epochs += epoch;
+                        break;
+                    }
+                    if (epoch == maxEpochs) {
+                        epochs += epoch;
+                    }
+                }
+            }
+
+            System.out.println(String.format("%s lr=%s: reached %.0f%% accuracy in %d/%d trials, mean %.1f epochs, %.1f ms training", optimizers.get(i).get(), learningRates[i], targetAccuracy * 100,
+                    reached, trials, (double) epochs / trials, nanos / 1e6 / trials));
+        }
+    }
+
+    /**
+     * Compares a grid search run one fold at a time without pruning against one on a pool of every core with pruning.
+     */
+    public static void gridSearchBenchmark() {
+        Pair<double[][], double[][]> data = Test.loadCancerData();
+        DatasetView view = DatasetView.of(data.getLeft(), data.getRight());
+        int[][] hiddenLayers = { { 15 }, { 30 }, { 5, 5 } };
+        DerivableFunction[] activationFunctions = { ActivationFunction.SIGMOID, ActivationFunction.TANH };
+        double[] learningRates = { 0.5, 0.05, 0.0005 };
+        int[] epochs = { 20 };
+
+        ForkJoinPool sequentialPool = new ForkJoinPool(1), pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        GridSearch sequential = new GridSearch(hiddenLayers, activationFunctions, learningRates, epochs, sequentialPool);
+        sequential.setPruning(1, Double.POSITIVE_INFINITY);
+        GridSearch parallel = new GridSearch(hiddenLayers, activationFunctions, learningRates, epochs, pool);
+
+        // warm up both before measuring
+        sequential.search(view);
+        parallel.search(view);
+        double sequentialTime = seconds(() -> sequential.search(view));
+        long[] pruned = new long[1];
+        double parallelTime = seconds(() -> pruned[0] = parallel.search(view).stream().filter(GridSearch.Result::isPruned).count());
+        sequentialPool.shutdown();
+        pool.shutdown();
+
+        System.out.println(String.format("%d configurations x 5 folds: sequential %.2f s, parallel with pruning %.2f s (%.1fx), %d pruned, %d threads", sequential.getConfigurations().size(),
+                sequentialTime, parallelTime, sequentialTime / parallelTime, pruned[0], pool.getParallelism()));
+    }
+
+    /**
+     * Compares training and prediction with and without instrumentation attached.
+     */
+    public static void instrumentationBenchmark() {
+        NeuralNetwork model = network(256, 3, ActivationFunction.RELU);
+        double[][] X = new double[1024][];
+        double[][] y = new double[X.length][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(model.getInputSize(), Math::random);
+            y[i] = new double[] { X[i][0] };
+        }
+        BatchWorkspace workspace = new BatchWorkspace(model, 32);
+        Gradients gradients = new Gradients(model);
+        double[] out = new double[model.getOutputSize()];
+
+        // each setting is measured twice so neither benefits from running after the other has warmed up
+        Instrumentation enabled = new Instrumentation(model);
+        for (Instrumentation instrumentation : new Instrumentation[] { null, enabled, null, enabled }) {
+            model.setInstrumentation(instrumentation);
+            String name = instrumentation == null ? "off" : "on";
+
+            System.out.println(String.format("Instrumentation %s: predictInto %.4f ms, mini-batch epoch %.3f ms, per-example epoch %.3f ms", name, time(() -> model.predictInto(X[0], out)),
+                    time(() -> model.trainBatches(X, y, 1e-6, workspace, gradients)), time(() -> model.train(X, y, 1e-6))));
+        }
+        System.out.println(model.getInstrumentation());
+    }
+
+    public static void parallelTrainingBenchmark() {
+        double[][] X = new double[50_000][];
+        double[][] y = new double[X.length][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(128, Math::random);
+            y[i] = new double[] { X[i][0] > 0.5 ? 1 : 0 };
+        }
+
+        double singleThreaded = 0;
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            NeuralNetwork model = new NeuralNetwork(new Layer(128, ActivationFunction.RELU), new Layer(128, ActivationFunction.RELU), new Layer(1));
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelTrainer trainer = new ParallelTrainer(model, 256, threads, pool);
+
+            // warm up on one epoch before timing the next
+            trainer.train(X, y, 0.001);
+
+            long start = System.nanoTime();
+            trainer.train(X, y, 0.001);
+            double time = (System.nanoTime() - start) / 1e6;
+            pool.shutdown();
+
+            if (threads == 1) {
+                singleThreaded = time;
+            }
+            System.out.println(String.format("ParallelTrainer %d threads: %.0f ms per epoch, %.0f %% scaling efficiency", threads, time, 100 * singleThreaded / (threads * time)));
+        }
+    }
+
+    public static void hogwildBenchmark() {
+        double[][] X = new double[20_000][];
+        double[][] y = new double[X.length][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(64, Math::random);
+            y[i] = new double[] { X[i][0] > 0.5 ? 1 : 0 };
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        NeuralNetwork synchronous = new NeuralNetwork(new Layer(64, ActivationFunction.RELU), new Layer(64, ActivationFunction.RELU), new Layer(1));
+        synchronous.train(X, y, 0.001);
+        long start = System.nanoTime();
+        synchronous.train(X, y, 0.001);
+        double synchronousTime = (System.nanoTime() - start) / 1e9;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        HogwildTrainer hogwild = new HogwildTrainer(new NeuralNetwork(new Layer(64, ActivationFunction.RELU), new Layer(64, ActivationFunction.RELU), new Layer(1)), threads, pool);
+        hogwild.train(X, y, 0.001);
+        start = System.nanoTime();
+        hogwild.train(X, y, 0.001);
+        double hogwildTime = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.println(String.format("Per-example training: synchronous %.0f examples/s, hogwild %d threads %.0f examples/s", X.length / synchronousTime, threads, X.length / hogwildTime));
+    }
+
+    public static void datasetCacheBenchmark() {
+        try {
+            Path directory = Files.createTempDirectory("dataset");
+            Path source = directory.resolve("generated.csv"), cache = directory.resolve("generated.nnds");
+
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(source))) {
+                SplittableRandom random = new SplittableRandom(0);
+                for (int row = 0; row < 200_000; row++) {
+                    StringBuilder line = new StringBuilder(random.nextBoolean() ? "1" : "0");
+                    for (int column = 0; column < 30; column++) {
+                        line.append(',').append(random.nextDouble() * 1000);
+                    }
+                    writer.println(line);
+                }
+            }
+            Function<ReadableByteChannel, CsvReader> readers = channel -> new CsvReader(channel, IntStream.range(1, 31).toArray(), new int[] { 0 });
+
+            long start = System.nanoTime();
+            try (CsvReader reader = readers.apply(FileChannel.open(source))) {
+                Batch batch = reader.newBatch(256);
+                while (reader.read(batch)) {
+                }
+            }
+            double parsing = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            CachedDataset dataset = DatasetCache.open(source, cache, readers);
+            double conversion = (System.nanoTime() - start) / 1e6;
+
+            Batch batch = dataset.newBatch(256);
+            double cached = time(() -> {
+                for (int row = 0; dataset.read(row, batch); row += batch.getRows()) {
+                }
+            });
+
+            System.out.println(String.format("Pass over %d rows: parsing CSV %.0f ms, cached %.1f ms (%.0fx), one-time conversion %.0f ms", dataset.getRows(), parsing, cached, parsing / cached, conversion));
+
+            Files.delete(source);
+            Files.delete(cache);
+            Files.delete(directory);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public static void initializationBenchmark() {
+        for (int width : new int[] { 256, 1024, 2048 }) {
+            int weights = 3 * width * (width + 1);
+            double baseline = time(() -> sink = MathUtils.generate(weights, Math::random)[0]);
+
+            for (WeightInitializer initializer : WeightInitializer.values()) {
+                double time = time(() -> new NeuralNetwork(1, initializer, new Layer(width), new Layer(width), new Layer(width), new Layer(1)));
+                System.out.println(String.format("%s width=%d depth=3: %.2f ms, Math.random %.2f ms (%.1fx)", initializer, width, time, baseline, baseline / time));
+            }
+        }
+    }
+
+    public static void datasetViewBenchmark() {
+        int rows = 1_000_000;
+        double[][] X = new double[rows][], y = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            X[i] = new double[] { i };
+            y[i] = new double[] { i % 2 };
+        }
+        DatasetView view = DatasetView.of(X, y);
+        SplittableRandom random = new SplittableRandom(1);
+
+        double shuffle = time(() -> view.shuffle(random));
+        double split = time(() -> sink = view.shuffled(1).split(0.6, 0.2, 0.2)[0].size());
+        double stratified = time(() -> sink = view.stratifiedSplit(1, 0.6, 0.2, 0.2)[0].size());
+        double trainTestSplit = time(() -> sink = MathUtils.trainTestSplit(X, y, 0.25, 1).getLeft().getLeft().length);
+
+        System.out.println(String.format("%d rows: shuffle %.2f ms, split %.2f ms, stratified split %.2f ms, trainTestSplit %.2f ms", rows, shuffle, split, stratified, trainTestSplit));
+    }
+
+    /**
+     * Compares dense and sparse inputs with 1 % of inputs non-zero, for prediction and per-example training.
+     */
+    public static void sparseInputBenchmark() {
+        SplittableRandom random = new SplittableRandom(1);
+
+        for (int width : new int[] { 1000, 10_000, 100_000 }) {
+            NeuralNetwork model = new NeuralNetwork(1, WeightInitializer.XAVIER, new Layer(width, ActivationFunction.RELU), new Layer(64, ActivationFunction.RELU), new Layer(1));
+
+            double[] x = new double[width], y = { 1 }, out = new double[1];
+            for (int i = 0; i < width / 100; i++) {
+                x[random.nextInt(width)] = random.nextDouble();
+            }
+            SparseVector sparseX = SparseVector.of(x);
+            double[][] X = { x }, Y = { y };
+            SparseVector[] sparseXs = { sparseX };
+
+            double denseTime = time(() -> model.predictInto(x, out)), sparseTime = time(() -> model.predictInto(sparseX, out));
+            System.out.println(String.format("predictInto width=%d nnz=%d: dense %.4f ms, sparse %.4f ms (%.1fx)", width, sparseX.getNonZeroCount(), denseTime, sparseTime, denseTime / sparseTime));
+
+            denseTime = time(() -> model.train(X, Y, 0.001));
+            sparseTime = time(() -> model.train(sparseXs, Y, 0.001));
+            System.out.println(String.format("train width=%d nnz=%d: dense %.4f ms, sparse %.4f ms (%.1fx)", width, sparseX.getNonZeroCount(), denseTime, sparseTime, denseTime / sparseTime));
+        }
+    }
+
+    public static void floatBenchmark() {
+        for (int width : new int[] { 256, 1024, 2048 }) {
+            NeuralNetwork model = network(width, 2, ActivationFunction.RELU);
+            FloatNeuralNetwork floatModel = model.toFloat();
+
+            double[] x = MathUtils.generate(width, Math::random), out = new double[1];
+            float[] floatX = MathUtils.toFloat(x), floatOut = new float[1];
+
+            double time = time(() -> model.predictInto(x, out));
+            double floatTime = time(() -> floatModel.predictInto(floatX, floatOut));
+
+            System.out.println(String.format("predictInto width=%d depth=2: double %.3f ms, float %.3f ms (%.1fx)", width, time, floatTime, time / floatTime));
+        }
+    }
+
+    public static void offHeapBenchmark() {
+        for (int width : new int[] { 256, 1024, 2048 }) {
+            NeuralNetwork model = network(width, 2, ActivationFunction.RELU), offHeap = model.toOffHeap();
+
+            double[] x = MathUtils.generate(width, Math::random), y = { 1 }, out = new double[1];
+            double time = time(() -> model.predictInto(x, out));
+            double offHeapTime = time(() -> offHeap.predictInto(x, out));
+            System.out.println(String.format("predictInto width=%d depth=2: heap %.3f ms, off-heap %.3f ms (%.1fx)", width, time, offHeapTime, time / offHeapTime));
+
+            double[][] X = { x }, Y = { y };
+            time = time(() -> model.train(X, Y, 0.001));
+            offHeapTime = time(() -> offHeap.train(X, Y, 0.001));
+            System.out.println(String.format("train width=%d depth=2: heap %.3f ms, off-heap %.3f ms (%.1fx)", width, time, offHeapTime, time / offHeapTime));
+        }
+    }
+
+    public static void quantizationBenchmark() {
+        for (int width : new int[] { 256, 1024, 2048 }) {
+            NeuralNetwork model = network(width, 2, ActivationFunction.RELU);
+
+            double[][] calibration = new double[100][];
+            for (int i = 0; i < calibration.length; i++) {
+                calibration[i] = MathUtils.generate(width, Math::random);
+            }
+            QuantizedNeuralNetwork quantized = QuantizedNeuralNetwork.quantize(model, calibration);
+
+            double[] x = calibration[0], out = new double[1];
+            double time = time(() -> model.predictInto(x, out));
+            double quantizedTime = time(() -> quantized.predictInto(x, out));
+
+            System.out.println(String.format("predictInto width=%d depth=2: double %.3f ms, int8 %.3f ms (%.1fx)", width, time, quantizedTime, time / quantizedTime));
+        }
+    }
+
+    /**
+     * Compares the loaded kernels with the scalar ones. Run with {@code --add-modules jdk.incubator.vector} to load SIMD
+     * kernels.
+     */
+    public static void kernelsBenchmark() {
+        Kernels scalar = Kernels.scalar(), kernels = MathUtils.getKernels();
+        int length = 4096;
+        double[] a = MathUtils.generate(length, Math::random), b = MathUtils.generate(length, Math::random);
+        float[] floatA = MathUtils.toFloat(a), floatB = MathUtils.toFloat(b);
+
+        double[] c = new double[length];
+
+        print("dot", time(() -> repeat(() -> scalar.dot(a, 0, b, 0, length))), time(() -> repeat(() -> kernels.dot(a, 0, b, 0, length))), kernels);
+        print("axpy", time(() -> repeat(() -> {
+            scalar.axpy(1e-9, a, 0, c, 0, length);
+            return c[0];
+        })), time(() -> repeat(() -> {
+            kernels.axpy(1e-9, a, 0, c, 0, length);
+            return c[0];
+        })), kernels);
+        print("float dot", time(() -> repeat(() -> scalar.dot(floatA, 0, floatB, 0, length))), time(() -> repeat(() -> kernels.dot(floatA, 0, floatB, 0, length))), kernels);
+        byte[] byteA = new byte[length], byteB = new byte[length];
+        for (int i = 0; i < length; i++) {
+            byteA[i] = (byte) (a[i] * 127);
+            byteB[i] = (byte) (b[i] * 127);
+        }
+        print("int8 dot", time(() -> repeat(() -> scalar.dot(byteA, 0, byteB, 0, length))), time(() -> repeat(() -> kernels.dot(byteA, 0, byteB, 0, length))), kernels);
+        print("sigmoid", time(() -> repeat(() -> {
+            System.arraycopy(a, 0, c, 0, length);
+            scalar.sigmoid(c, 0, length);
+            return c[0];
+        })), time(() -> repeat(() -> {
+            System.arraycopy(a, 0, c, 0, length);
+            kernels.sigmoid(c, 0, length);
+            return c[0];
+        })), kernels);
+        print("tanh", time(() -> repeat(() -> {
+            System.arraycopy(a, 0, c, 0, length);
+            scalar.tanh(c, 0, length);
+            return c[0];
+        })), time(() -> repeat(() -> {
+            System.arraycopy(a, 0, c, 0, length);
+            kernels.tanh(c, 0, length);
+            return c[0];
+        })), kernels);
+    }
+
+    /**
+     * Runs a task many times, keeping its results so the JIT compiler cannot remove it.
+     */
+    private static void repeat(DoubleSupplier task) {
+        double sum = 0;
+        for (int i = 0; i < 1000; i++) {
+            sum += task.getAsDouble();
+        }
+        sink = sum;
+    }
+
+    private static void print(String kernel, double scalarTime, double time, Kernels kernels) {
+        System.out.println(String.format("%s of %s: scalar %.3f ms, %s %.3f ms (%.1fx)", kernel, 4096, scalarTime, kernels.getClass().getSimpleName(), time, scalarTime / time));
+    }
+
+    /**
+     * Forward pass over [inputNeuron][outputNeuron] weights as it was before layers used flat storage.
+     */
+    private static double[] jaggedApply(double[][] weights, double[] input) {
+        double[] output = new double[weights[0].length];
+
+        for (int weight = 0; weight < output.length; weight++) {
+            for (int neuron = 0; neuron < weights.length; neuron++) {
+                output[weight] += (neuron >= input.length ? 1 : input[neuron]) * weights[neuron][weight];
+            }
+        }
+
+        return output;
+    }
+
+    private static NeuralNetwork network(int width, int depth, ActivationFunction activationFunction) {
+        Layer[] layers = new Layer[depth + 1];
+        for (int i = 0; i < depth; i++) {
+            layers[i] = new Layer(width, activationFunction);
+        }
+        // single output
+        layers[depth] = new Layer(1);
+        return new NeuralNetwork(layers);
+    }
+
+    /**
+     * Runs a task repeatedly after warming it up, printing the mean time, bytes allocated and garbage collections per
+     * operation. Tasks whose names do not contain the filter are skipped.
+     */
+    private static void measure(String filter, String name, Runnable task) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < WARMUP_NANOS) {
+            task.run();
+        }
+
+        long operations = 0;
+        long collections = garbageCollections();
+        long allocated = allocatedBytes();
+        start = System.nanoTime();
+        long elapsed;
+        do {
+            task.run();
+            operations++;
+        } while ((elapsed = System.nanoTime() - start) < MEASUREMENT_NANOS);
+        allocated = allocatedBytes() - allocated;
+        collections = garbageCollections() - collections;
+
+        System.out.println(String.format("%s: %.1f ns/op, %.1f B/op, %d GCs", name, (double) elapsed / operations, (double) allocated / operations, collections));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long garbageCollections() {
+        long collections = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+        }
+        return collections;
+    }
+
+    /**
+     * Gets the mean time in milliseconds taken to run a task after warming it up.
+     */
+    private static double time(Runnable task) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
\ No newline at end of file
@@ -1,22 +1,72 @@
 package com.tomallton.neuralnetwork;
 
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
-public interface DerivableFunction extends Function<Double, Double> {
+public interface DerivableFunction extends DoubleUnaryOperator {
 
-    Double derivative(Double x);
+    double derivative(double x);
 
-    public static DerivableFunction create(Function<Double, Double> fx, Function<Double, Double> derivative) {
+    /**
+     * Applies the function to every element of a vector in place.
+     */
+    default double[] apply(double[] x) {
+        return apply(x, 0, x.length);
+    }
+
+    default double[] apply(double[] x, int from, int to) {
+        for (int i = from; i < to; i++) {
+            x[i] = applyAsDouble(x[i]);
+        }
+        return x;
+    }
+
+    /**
+     * Calculates the derivative at every element of a vector, such as the outputs of a layer before activation.
+     */
+    default double[] derivative(double[] x, double[] out) {
+        return derivative(x, out, 0, x.length);
+    }
+
+    default double[] derivative(double[] x, double[] out, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out[i] = derivative(x[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Applies the function to every element of a single-precision vector in place.
+     */
+    default float[] apply(float[] x) {
+        for (int i = 0; i < x.length; i++) {
+            x[i] = (float) applyAsDouble(x[i]);
+        }
+        return x;
+    }
+
+    default float[] derivative(float[] x, float[] out) {
+        for (int i = 0; i < x.length; i++) {
+            out[i] = (float) derivative(x[i]);
+        }
+        return out;
+    }
+
+    public static DerivableFunction of(DoubleUnaryOperator fx, DoubleUnaryOperator derivative) {
         return new DerivableFunction() {
             @Override
-            public Double apply(Double x) {
-                return fx.apply(x);
+            public double applyAsDouble(double x) {
+                return fx.applyAsDouble(x);
             }
 
             @Override
-            public Double derivative(Double x) {
-                return derivative.apply(x);
+            public double derivative(double x) {
+                return derivative.applyAsDouble(x);
             }
         };
     }
+
+    public static DerivableFunction create(Function<Double, Double> fx, Function<Double, Double> derivative) {
+        return of(fx::apply, derivative::apply);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.tomallton.neuralnetwork.util.MathUtils;
+
+/**
+ * A network with single-precision weights and activations, for models where halving memory and bandwidth matters more
+ * than precision. Converts to and from a double-precision {@link NeuralNetwork}.
+ */
+public class FloatNeuralNetwork implements Function<float[], float[]> {
+    private final FloatLayer[] layers;
+    private final ThreadLocal<Activations> activations = ThreadLocal.withInitial(this::newActivations);
+
+    public FloatNeuralNetwork(Layer... layers) {
+        this(new NeuralNetwork(layers));
+    }
+
+    public FloatNeuralNetwork(NeuralNetwork network) {
+        this(Stream.of(network.getLayers()).map(FloatLayer::new).toArray(FloatLayer[]::new));
+    }
+
+    FloatNeuralNetwork(FloatLayer[] layers) {
+        this.layers = layers;
+    }
+
+    public void train(float[][] X, float[][] y, float learningRate, int epochs) {
+        for (int i = 0; i < epochs; i++) {
+            train(X, y, learningRate);
+        }
+    }
+
+    /**
+     * Trains for one epoch, updating the weights after each example.
+     *
+     * @return The error of each example.
+     */
+    public float[] train(float[][] X, float[][] y, float learningRate) {
+        float[] totalErrors = new float[X.length];
+        Activations activations = this.activations.get();
+
+        for (int i = 0; i < X.length; i++) {
+            totalErrors[i] = train(X[i], y[i], learningRate, activations);
+        }
+
+        return totalErrors;
+    }
+
+    private float train(float[] x, float[] yTarget, float learningRate, Activations activations) {
+        float[] yPredict = forward(x, activations);
+
+        // errors from output layer
+        float error = 0;
+        float[] deltas = activations.deltas[layers.length - 1];
+        for (int i = 0; i < yPredict.length; i++) {
+            deltas[i] = yPredict[i] - yTarget[i];
+            error += deltas[i] * deltas[i];
+        }
+
+        // backpropagate errors starting from the last layer
+        for (int layerIndex = layers.length - 1; layerIndex >= 0; layerIndex--) {
+            FloatLayer layer = layers[layerIndex];
+            float[] weights = layer.getWeightData();
+            int inputSize = layer.getInputSize(), stride = layer.getStride();
+
+            deltas = activations.deltas[layerIndex];
+            float[] derivatives = layer.getActivationFunction().derivative(activations.outputsBeforeActivation[layerIndex], activations.derivatives[layerIndex]);
+            for (int neuron = 0; neuron < deltas.length; neuron++) {
+                deltas[neuron] *= derivatives[neuron];
+            }
+
+            // pass the deltas back through the weights before they are updated
+            if (layerIndex > 0) {
+                float[] previousDeltas = activations.deltas[layerIndex - 1];
+                Arrays.fill(previousDeltas, 0);
+                for (int neuron = 0, row = 0; neuron < deltas.length; neuron++, row += stride) {
+                    MathUtils.axpy(deltas[neuron], weights, row, previousDeltas, 0, inputSize);
+                }
+            }
+
+            // if first hidden layer, last layer input is the actual input
+            float[] lastInput = layerIndex == 0 ? x : activations.outputs[layerIndex - 1];
+            for (int neuron = 0, row = 0; neuron < deltas.length; neuron++, row += stride) {
+                MathUtils.axpy(-learningRate * deltas[neuron], lastInput, 0, weights, row, inputSize);
+                if (layer.hasBias()) {
+                    weights[row + inputSize] -= learningRate * deltas[neuron];
+                }
+            }
+        }
+
+        return 0.5f * error;
+    }
+
+    @Override
+    public float[] apply(float[] x) {
+        return predict(x);
+    }
+
+    public double[][] predict(double[][] X) {
+        double[][] output = new double[X.length][];
+
+        for (int i = 0; i < X.length; i++) {
+            output[i] = MathUtils.toDouble(predict(MathUtils.toFloat(X[i])));
+        }
+
+        return output;
+    }
+
+    public float[] predict(float... x) {
+        return predictInto(x, new float[getOutputSize()]);
+    }
+
+    /**
+     * Predicts the output for an input, writing it into {@code out}. Allocates nothing once the calling thread has made
+     * its first prediction.
+     */
+    public float[] predictInto(float[] x, float[] out) {
+        float[] output = forward(x, activations.get());
+        System.arraycopy(output, 0, out, 0, output.length);
+        return out;
+    }
+
+    private float[] forward(float[] x, Activations activations) {
+        float[] output = x;
+
+        for (int i = 0; i < layers.length; i++) {
+            output = layers[i].apply(output, activations.outputsBeforeActivation[i], activations.outputs[i]);
+        }
+
+        return output;
+    }
+
+    /**
+     * Converts the network to double precision.
+     */
+    public NeuralNetwork toDouble() {
+        return new NeuralNetwork(Stream.of(layers).map(FloatLayer::toLayer).toArray(Layer[]::new));
+    }
+
+    public FloatLayer[] getLayers() {
+        return layers;
+    }
+
+    public int getInputSize() {
+        return layers[0].getInputSize();
+    }
+
+    public int getOutputSize() {
+        return layers[layers.length - 1].getOutputSize();
+    }
+
+    @Override
+    public String toString() {
+        return "FloatNeuralNetwork{layers=" + String.join(", ", Stream.of(layers).map(Object::toString).collect(Collectors.toList())) + "}";
+    }
+
+    private Activations newActivations() {
+        return new Activations(layers);
+    }
+
+    // buffers reused by each thread for its passes through the network, static so that a thread's buffers do not keep
+    // the network reachable
+    private static class Activations {
+        private final float[][] outputsBeforeActivation, outputs, derivatives, deltas;
+
+        private Activations(FloatLayer[] layers) {
+            outputsBeforeActivation = new float[layers.length][];
+            outputs = new float[layers.length][];
+            derivatives = new float[layers.length][];
+            deltas = new float[layers.length][];
+
+            for (int i = 0; i < layers.length; i++) {
+                outputsBeforeActivation[i] = new float[layers[i].getOutputSize()];
+                outputs[i] = new float[layers[i].getOutputSize()];
+                derivatives[i] = new float[layers[i].getOutputSize()];
+                deltas[i] = new float[layers[i].getOutputSize()];
+            }
+        }
+    }
+}
\ No newline at end of file
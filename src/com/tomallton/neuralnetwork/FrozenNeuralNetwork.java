@@ -0,0 +1,101 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An immutable copy of a network used for inference. Activations are kept in a workspace per thread or per call rather
+ * than in the model, so one instance can serve predictions from any number of threads.
+ */
+public final class FrozenNeuralNetwork implements Function<double[], double[]> {
+    private final Layer[] layers;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(this::newWorkspace);
+
+    FrozenNeuralNetwork(Layer... layers) {
+        this(layers, true);
+    }
+
+    // without copying, for layers nothing else holds, such as those over a mapped model file
+    FrozenNeuralNetwork(Layer[] layers, boolean copy) {
+        this.layers = copy ? Stream.of(layers).map(Layer::new).toArray(Layer[]::new) : layers.clone();
+    }
+
+    @Override
+    public double[] apply(double[] x) {
+        return predict(x);
+    }
+
+    public double[][] predict(double[][] X) {
+        double[][] output = new double[X.length][];
+
+        for (int i = 0; i < X.length; i++) {
+            output[i] = predict(X[i]);
+        }
+
+        return output;
+    }
+
+    public double[] predict(double... x) {
+        return predictInto(x, new double[getOutputSize()]);
+    }
+
+    public double[] predictInto(double[] x, double[] out) {
+        return predictInto(x, out, workspaces.get());
+    }
+
+    public double[] predictInto(double[] x, double[] out, Workspace workspace) {
+        double[] output = NeuralNetwork.forward(layers, x, workspace);
+        System.arraycopy(output, 0, out, 0, output.length);
+        return out;
+    }
+
+    /**
+     * Predicts the output for a sparse input, reading only the first layer's weights for its non-zero inputs.
+     */
+    public double[] predict(SparseVector x) {
+        return predictInto(x, new double[getOutputSize()], workspaces.get());
+    }
+
+    public double[] predictInto(SparseVector x, double[] out, Workspace workspace) {
+        double[] output = NeuralNetwork.forward(layers, x, workspace);
+        System.arraycopy(output, 0, out, 0, output.length);
+        return out;
+    }
+
+    /**
+     * Predicts the outputs for a batch of inputs stored as a row-major matrix with one row per example.
+     *
+     * @return The outputs as a row-major matrix, owned by the workspace.
+     */
+    public double[] predict(double[] x, int rows, BatchWorkspace workspace) {
+        return NeuralNetwork.forward(layers, x, rows, workspace, null);
+    }
+
+    /**
+     * Creates a workspace for calling {@link #predictInto(double[], double[], Workspace)}.
+     */
+    public Workspace newWorkspace() {
+        return new Workspace(layers);
+    }
+
+    /**
+     * Creates a workspace for calling {@link #predict(double[], int, BatchWorkspace)} with up to {@code capacity} rows.
+     */
+    public BatchWorkspace newBatchWorkspace(int capacity) {
+        return new BatchWorkspace(capacity, layers);
+    }
+
+    public int getInputSize() {
+        return layers[0].getInputSize();
+    }
+
+    public int getOutputSize() {
+        return layers[layers.length - 1].getOutputSize();
+    }
+
+    @Override
+    public String toString() {
+        return "FrozenNeuralNetwork{layers=" + String.join(", ", Stream.of(layers).map(Object::toString).collect(Collectors.toList())) + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.Arrays;
+
+/**
+ * Accumulated gradients of the error with respect to the weights of every layer, laid out like the weights of each
+ * layer, see {@link Layer#getWeightStorage()}.
+ */
+public class Gradients {
+    private final double[][] gradients;
+
+    public Gradients(NeuralNetwork network) {
+        this(network.getLayers());
+    }
+
+    public Gradients(Layer... layers) {
+        this.gradients = new double[layers.length][];
+
+        for (int i = 0; i < layers.length; i++) {
+            gradients[i] = new double[layers[i].getWeightCount()];
+        }
+    }
+
+    public double[] get(int layer) {
+        return gradients[layer];
+    }
+
+    public int size() {
+        return gradients.length;
+    }
+
+    public void clear() {
+        for (double[] layer : gradients) {
+            Arrays.fill(layer, 0);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,422 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.tomallton.neuralnetwork.data.Batch;
+import com.tomallton.neuralnetwork.data.DatasetView;
+import com.tomallton.neuralnetwork.util.MathUtils;
+import com.tomallton.neuralnetwork.util.Pair;
+
+/**
+ * Searches a grid of hyperparameters with k-fold cross-validation. Every fold of every configuration is trained as its
+ * own task on a work-stealing pool, all reading the same examples through {@link DatasetView}s without copying them.
+ * Tasks are submitted a fold at a time across all configurations, so every configuration is scored on its first folds
+ * early on, and a configuration whose mean validation loss is clearly worse than the best one's is pruned rather than
+ * trained on its remaining folds.
+ * <p>
+ * Each configuration builds a network of input and hidden layers with its activation function followed by a linear
+ * output layer, initialized from the same seed for every fold, and trains it with mini-batch gradient descent.
+ */
+public class GridSearch {
+    private final int[][] hiddenLayers;
+    private final DerivableFunction[] activationFunctions;
+    private final double[] learningRates;
+    private final int[] epochs;
+    private final ForkJoinPool pool;
+
+    private int folds = 5, batchSize = 32, pruneAfterFolds = 2;
+    private boolean stratified;
+    private double pruneMargin = 0.5;
+    private long seed;
+
+    public GridSearch(int[][] hiddenLayers, DerivableFunction[] activationFunctions, double[] learningRates, int[] epochs) {
+        this(hiddenLayers, activationFunctions, learningRates, epochs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param hiddenLayers The sizes of the hidden layers to try, each an array with one size per hidden layer.
+     * @param pool The pool to train on, whose parallelism bounds the number of folds trained at once.
+     */
+    public GridSearch(int[][] hiddenLayers, DerivableFunction[] activationFunctions, double[] learningRates, int[] epochs, ForkJoinPool pool) {
+        if (hiddenLayers.length == 0 || activationFunctions.length == 0 || learningRates.length == 0 || epochs.length == 0) {
+            throw new IllegalArgumentException("Every hyperparameter needs at least one value");
+        }
+        this.hiddenLayers = hiddenLayers;
+        this.activationFunctions = activationFunctions;
+        this.learningRates = learningRates;
+        this.epochs = epochs;
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of folds, and whether each fold should hold the classes of the examples in the same proportions
+     * as the whole dataset, see {@link DatasetView#stratifiedKFold(int, long)}.
+     */
+    public void setFolds(int folds, boolean stratified) {
+        if (folds < 2) {
+            throw new IllegalArgumentException("At least 2 folds are needed");
+        }
+        this.folds = folds;
+        this.stratified = stratified;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Prunes a configuration once it has been scored on at least {@code afterFolds} folds if its mean validation loss
+     * is worse than the best mean so far by more than a proportion {@code margin} of it, for example 0.5 for 50 %. A
+     * margin of {@link Double#POSITIVE_INFINITY} disables pruning.
+     */
+    public void setPruning(int afterFolds, double margin) {
+        if (afterFolds < 1 || margin < 0) {
+            throw new IllegalArgumentException("Folds must be positive and margin must not be negative");
+        }
+        this.pruneAfterFolds = afterFolds;
+        this.pruneMargin = margin;
+    }
+
+    /**
+     * Sets the seed for splitting the folds, initializing the networks and shuffling the examples every epoch.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets every combination of the hyperparameters, in the order they are searched.
+     */
+    public List<Configuration> getConfigurations() {
+        List<Configuration> configurations = new ArrayList<>();
+        for (int[] layers : hiddenLayers) {
+            for (DerivableFunction activationFunction : activationFunctions) {
+                for (double learningRate : learningRates) {
+                    for (int epochCount : epochs) {
+                        configurations.add(new Configuration(layers, activationFunction, learningRate, epochCount));
+                    }
+                }
+            }
+        }
+        return configurations;
+    }
+
+    /**
+     * Runs the search, waiting for it to finish.
+     *
+     * @return The result of every configuration, best first.
+     */
+    public List<Result> search(DatasetView data) {
+        try {
+            return start(data).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Search failed", exception.getCause());
+        }
+    }
+
+    /**
+     * Starts the search in the background. Cancelling the returned future stops every task at the end of its current
+     * epoch.
+     *
+     * @return A future completed with the result of every configuration, best first.
+     */
+    public CompletableFuture<List<Result>> start(DatasetView data) {
+        List<Pair<DatasetView, DatasetView>> splits = stratified ? data.stratifiedKFold(folds, seed) : data.shuffled(seed).kFold(folds);
+        return new Search(getConfigurations(), splits, data.getFeatureCount(), data.getLabelCount()).start();
+    }
+
+    // one run of the search, tracking the folds scored for every configuration
+    private class Search {
+        private final CompletableFuture<List<Result>> future = new CompletableFuture<>();
+        private final List<Pair<DatasetView, DatasetView>> splits;
+        private final int inputSize, outputSize;
+        private final Progress[] progress;
+        private final AtomicInteger remainingTasks;
+
+        // settings as they were when the search started
+        private final int batchSize = GridSearch.this.batchSize, pruneAfterFolds = GridSearch.this.pruneAfterFolds;
+        private final double pruneMargin = GridSearch.this.pruneMargin;
+        private final long seed = GridSearch.this.seed;
+
+        private Search(List<Configuration> configurations, List<Pair<DatasetView, DatasetView>> splits, int inputSize, int outputSize) {
+            this.splits = splits;
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+            this.progress = configurations.stream().map(configuration -> new Progress(configuration, splits.size())).toArray(Progress[]::new);
+            this.remainingTasks = new AtomicInteger(progress.length * splits.size());
+        }
+
+        private CompletableFuture<List<Result>> start() {
+            // a fold at a time, so the first folds of every configuration finish before any configuration's last fold
+            for (int fold = 0; fold < splits.size(); fold++) {
+                for (Progress configuration : progress) {
+                    int foldIndex = fold;
+                    pool.execute(() -> run(configuration, foldIndex));
+                }
+            }
+            return future;
+        }
+
+        private void run(Progress configuration, int fold) {
+            try {
+                if (!future.isDone() && !configuration.pruned) {
+                    long start = System.nanoTime();
+                    double[] scores = evaluate(configuration, splits.get(fold));
+                    if (scores != null) {
+                        scored(configuration, scores[0], scores[1], start, System.nanoTime());
+                    }
+                }
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+            if (remainingTasks.decrementAndGet() == 0) {
+                future.complete(results());
+            }
+        }
+
+        /**
+         * Trains a network on the training examples of a fold and scores it on the rest.
+         *
+         * @return The validation loss and accuracy, or null if the search was cancelled or the configuration pruned.
+         */
+        private double[] evaluate(Progress progress, Pair<DatasetView, DatasetView> split) {
+            Configuration configuration = progress.configuration;
+            NeuralNetwork network = configuration.newNetwork(inputSize, outputSize, seed);
+            Optimizer optimizer = new SGD();
+            BatchWorkspace workspace = new BatchWorkspace(network, batchSize);
+            Gradients gradients = new Gradients(network);
+
+            DatasetView training = split.getLeft().copy(), validation = split.getRight();
+            Batch batch = training.newBatch(batchSize);
+            SplittableRandom random = new SplittableRandom(seed);
+
+            for (int epoch = 0; epoch < configuration.epochs; epoch++) {
+                if (future.isDone() || progress.pruned) {
+                    return null;
+                }
+                training.shuffle(random);
+                for (int from = 0; training.read(from, batch); from += batchSize) {
+                    network.train(batch, configuration.learningRate, workspace, gradients, optimizer);
+                }
+            }
+
+            double loss = 0;
+            int correct = 0;
+            for (int from = 0; validation.read(from, batch); from += batchSize) {
+                double[] output = network.predict(batch.getFeatures(), batch.getRows(), workspace), target = batch.getLabels();
+
+                for (int row = 0; row < batch.getRows(); row++) {
+                    int offset = row * outputSize;
+                    for (int neuron = 0; neuron < outputSize; neuron++) {
+                        loss += 0.5 * MathUtils.square(output[offset + neuron] - target[offset + neuron]);
+                    }
+                    correct += predictedClass(output, offset) == predictedClass(target, offset) ? 1 : 0;
+                }
+            }
+            return new double[] { loss / validation.size(), (double) correct / validation.size() };
+        }
+
+        // rounds a single output, or takes the largest of several as with one-hot targets
+        private int predictedClass(double[] values, int offset) {
+            if (outputSize == 1) {
+                return (int) Math.round(values[offset]);
+            }
+            int largest = 0;
+            for (int neuron = 1; neuron < outputSize; neuron++) {
+                if (values[offset + neuron] > values[offset + largest]) {
+                    largest = neuron;
+                }
+            }
+            return largest;
+        }
+
+        private synchronized void scored(Progress configuration, double loss, double accuracy, long start, long end) {
+            configuration.losses[configuration.scored] = loss;
+            configuration.accuracies[configuration.scored] = accuracy;
+            configuration.scored++;
+            configuration.start = Math.min(configuration.start, start);
+            configuration.end = Math.max(configuration.end, end);
+
+            // compare means over however many folds each configuration has been scored on so far
+            double best = Double.POSITIVE_INFINITY;
+            for (Progress other : progress) {
+                if (!other.pruned && other.scored >= pruneAfterFolds) {
+                    best = Math.min(best, other.meanLoss());
+                }
+            }
+            for (Progress other : progress) {
+                if (!other.pruned && other.scored >= pruneAfterFolds && other.scored < splits.size() && other.meanLoss() > best * (1 + pruneMargin)) {
+                    other.pruned = true;
+                }
+            }
+        }
+
+        private synchronized List<Result> results() {
+            List<Result> results = new ArrayList<>();
+            for (Progress configuration : progress) {
+                double[] losses = Arrays.copyOf(configuration.losses, configuration.scored), accuracies = Arrays.copyOf(configuration.accuracies, configuration.scored);
+                results.add(new Result(configuration.configuration, losses, accuracies, configuration.pruned, configuration.scored == 0 ? 0 : configuration.end - configuration.start));
+            }
+            results.sort(Comparator.comparing(Result::isPruned).thenComparingDouble(Result::getMeanLoss));
+            return results;
+        }
+    }
+
+    // the folds scored so far for a configuration, guarded by its search
+    private static class Progress {
+        private final Configuration configuration;
+        private final double[] losses, accuracies;
+        private int scored;
+        private long start = Long.MAX_VALUE, end = Long.MIN_VALUE;
+        private volatile boolean pruned;
+
+        private Progress(Configuration configuration, int folds) {
+            this.configuration = configuration;
+            this.losses = new double[folds];
+            this.accuracies = new double[folds];
+        }
+
+        private double meanLoss() {
+            return mean(losses, scored);
+        }
+    }
+
+    private static double mean(double[] values, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += values[i];
+        }
+        return sum / length;
+    }
+
+    private static double standardDeviation(double[] values) {
+        double mean = mean(values, values.length), sum = 0;
+        for (double value : values) {
+            sum += MathUtils.square(value - mean);
+        }
+        return values.length < 2 ? 0 : Math.sqrt(sum / (values.length - 1));
+    }
+
+    public static class Configuration {
+        private final int[] hiddenLayers;
+        private final DerivableFunction activationFunction;
+        private final double learningRate;
+        private final int epochs;
+
+        private Configuration(int[] hiddenLayers, DerivableFunction activationFunction, double learningRate, int epochs) {
+            this.hiddenLayers = hiddenLayers.clone();
+            this.activationFunction = activationFunction;
+            this.learningRate = learningRate;
+            this.epochs = epochs;
+        }
+
+        /**
+         * Creates a network for this configuration, initialized from a seed.
+         */
+        public NeuralNetwork newNetwork(int inputSize, int outputSize, long seed) {
+            Layer[] layers = new Layer[hiddenLayers.length + 2];
+            layers[0] = new Layer(inputSize, activationFunction);
+            for (int i = 0; i < hiddenLayers.length; i++) {
+                layers[i + 1] = new Layer(hiddenLayers[i], activationFunction);
+            }
+            layers[layers.length - 1] = new Layer(outputSize);
+            return new NeuralNetwork(seed, layers);
+        }
+
+        public int[] getHiddenLayers() {
+            return hiddenLayers.clone();
+        }
+
+        public DerivableFunction getActivationFunction() {
+            return activationFunction;
+        }
+
+        public double getLearningRate() {
+            return learningRate;
+        }
+
+        public int getEpochs() {
+            return epochs;
+        }
+
+        @Override
+        public String toString() {
+            return "Configuration{hiddenLayers=" + Arrays.toString(hiddenLayers) + ", activationFunction=" + activationFunction + ", learningRate=" + learningRate + ", epochs="
+                    + epochs + "}";
+        }
+    }
+
+    public static class Result {
+        private final Configuration configuration;
+        private final double[] losses, accuracies;
+        private final boolean pruned;
+        private final long nanos;
+
+        private Result(Configuration configuration, double[] losses, double[] accuracies, boolean pruned, long nanos) {
+            this.configuration = configuration;
+            this.losses = losses;
+            this.accuracies = accuracies;
+            this.pruned = pruned;
+            this.nanos = nanos;
+        }
+
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        /**
+         * Gets the number of folds scored, fewer than the number of folds if the configuration was pruned.
+         */
+        public int getFolds() {
+            return losses.length;
+        }
+
+        public double getMeanLoss() {
+            return losses.length == 0 ? Double.NaN : mean(losses, losses.length);
+        }
+
+        public double getLossStandardDeviation() {
+            return standardDeviation(losses);
+        }
+
+        public double getMeanAccuracy() {
+            return accuracies.length == 0 ? Double.NaN : mean(accuracies, accuracies.length);
+        }
+
+        public double getAccuracyStandardDeviation() {
+            return standardDeviation(accuracies);
+        }
+
+        public boolean isPruned() {
+            return pruned;
+        }
+
+        /**
+         * Gets the wall-clock time from the start of the configuration's first fold to the end of its last.
+         */
+        public long getTime(TimeUnit unit) {
+            return unit.convert(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Result{%s, folds=%d, loss=%.4f+-%.4f, accuracy=%.3f+-%.3f, pruned=%b, time=%d ms}", configuration, getFolds(), getMeanLoss(),
+                    getLossStandardDeviation(), getMeanAccuracy(), getAccuracyStandardDeviation(), pruned, getTime(TimeUnit.MILLISECONDS));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.tomallton.neuralnetwork;
+
+import com.tomallton.neuralnetwork.util.MathUtils;
+
+/**
+ * Weights stored in a {@code double[]} on the heap.
+ */
+public class HeapWeightStorage implements WeightStorage {
+    private final double[] weights;
+
+    public HeapWeightStorage(double[] weights) {
+        this.weights = weights;
+    }
+
+    @Override
+    public int size() {
+        return weights.length;
+    }
+
+    @Override
+    public double get(int index) {
+        return weights[index];
+    }
+
+    @Override
+    public void set(int index, double value) {
+        weights[index] = value;
+    }
+
+    @Override
+    public void get(int from, double[] destination, int offset, int length) {
+        System.arraycopy(weights, from, destination, offset, length);
+    }
+
+    @Override
+    public void set(int from, double[] source, int offset, int length) {
+        System.arraycopy(source, offset, weights, from, length);
+    }
+
+    @Override
+    public double dot(int from, double[] x, int xOffset, int length) {
+        return MathUtils.dot(x, xOffset, weights, from, length);
+    }
+
+    @Override
+    public double dot(int from, SparseVector x) {
+        return MathUtils.dot(x.getValues(), x.getIndices(), 0, x.getNonZeroCount(), weights, from);
+    }
+
+    @Override
+    public void addTo(double alpha, int from, double[] y, int yOffset, int length) {
+        MathUtils.axpy(alpha, weights, from, y, yOffset, length);
+    }
+
+    @Override
+    public void add(double alpha, double[] x, int xOffset, int from, int length) {
+        MathUtils.axpy(alpha, x, xOffset, weights, from, length);
+    }
+
+    @Override
+    public void add(double alpha, SparseVector x, int from) {
+        MathUtils.axpy(alpha, x.getValues(), x.getIndices(), 0, x.getNonZeroCount(), weights, from);
+    }
+
+    @Override
+    public void update(Optimizer optimizer, int layer, double[] gradients, int from, int to, double learningRate, int examples) {
+        optimizer.update(layer, weights, 0, gradients, from, to, learningRate, examples);
+    }
+
+    @Override
+    public HeapWeightStorage copy() {
+        return new HeapWeightStorage(weights.clone());
+    }
+
+    @Override
+    public double[] array() {
+        return weights;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Trains a network asynchronously in the style of Hogwild!. Several threads each run per-example gradient descent over
+ * their own share of the examples, writing to the shared weights without any locking. Threads may overwrite each
+ * other's updates and read partially updated weights, so results are not reproducible, in exchange for throughput.
+ */
+public class HogwildTrainer {
+    private final NeuralNetwork network;
+    private final int threads;
+    private final ExecutorService executor;
+    private final Workspace[] workspaces;
+
+    public HogwildTrainer(NeuralNetwork network) {
+        this(network, ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool());
+    }
+
+    public HogwildTrainer(NeuralNetwork network, int threads, ExecutorService executor) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.network = network;
+        this.threads = threads;
+        this.executor = executor;
+        this.workspaces = new Workspace[threads];
+
+        for (int thread = 0; thread < threads; thread++) {
+            workspaces[thread] = new Workspace(network);
+        }
+    }
+
+    public void train(double[][] X, double[][] y, double learningRate, int epochs) {
+        for (int i = 0; i < epochs; i++) {
+            train(X, y, learningRate);
+        }
+    }
+
+    /**
+     * Trains for one epoch.
+     *
+     * @return The error of each example.
+     */
+    public double[] train(double[][] X, double[][] y, double learningRate) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("Length of arrays are not the same");
+        }
+        double[] totalErrors = new double[X.length];
+        int examplesPerThread = (X.length + threads - 1) / threads;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int thread = 0; thread * examplesPerThread < X.length; thread++) {
+            int from = thread * examplesPerThread, to = Math.min(from + examplesPerThread, X.length);
+            Workspace workspace = workspaces[thread];
+
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    totalErrors[i] = network.train(X[i], y[i], learningRate, workspace);
+                }
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Training failed", exception.getCause());
+        }
+
+        return totalErrors;
+    }
+
+    public NeuralNetwork getNetwork() {
+        return network;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,239 @@
+package com.tomallton.neuralnetwork;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.tomallton.neuralnetwork.util.MathUtils;
+
+/**
+ * Counters for where a network spends its time, attached with {@link NeuralNetwork#setInstrumentation(Instrumentation)}.
+ * Records the time spent passing forwards and backwards through each layer, examples and time per weight update,
+ * memory allocated per update, the loss of each epoch and, when {@link #setGradientNormInterval(int) asked for}, the norm
+ * of each layer's gradients.
+ * <p>
+ * Counters are striped, so any number of threads can train or predict through an instrumented network without
+ * contending. A network without instrumentation pays only a null check per layer.
+ */
+public class Instrumentation implements InstrumentationMXBean {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_MEASURABLE = THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported() && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+
+    private final LongAdder[] forwardNanos, backwardNanos;
+    private final LongAdder examples = new LongAdder(), steps = new LongAdder(), stepNanos = new LongAdder(), allocatedBytes = new LongAdder();
+    private final AtomicLongArray gradientNorms;
+
+    private volatile int gradientNormInterval;
+    private volatile int epoch;
+    private volatile double loss = Double.NaN, validationLoss = Double.NaN;
+    private volatile TrainingListener[] listeners = {};
+
+    public Instrumentation(NeuralNetwork network) {
+        this(network.getLayers().length);
+    }
+
+    public Instrumentation(int layers) {
+        this.forwardNanos = new LongAdder[layers];
+        this.backwardNanos = new LongAdder[layers];
+        this.gradientNorms = new AtomicLongArray(layers);
+
+        for (int i = 0; i < layers; i++) {
+            forwardNanos[i] = new LongAdder();
+            backwardNanos[i] = new LongAdder();
+            gradientNorms.set(i, Double.doubleToRawLongBits(Double.NaN));
+        }
+    }
+
+    public synchronized void addListener(TrainingListener listener) {
+        TrainingListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        this.listeners = listeners;
+    }
+
+    public synchronized void removeListener(TrainingListener listener) {
+        this.listeners = Arrays.stream(listeners).filter(l -> l != listener).toArray(TrainingListener[]::new);
+    }
+
+    /**
+     * Registers these counters with the platform MBean server, where JMX clients such as JConsole can read them.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.tomallton.neuralnetwork:type=Instrumentation,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    void recordForward(int layer, long nanos) {
+        forwardNanos[layer].add(nanos);
+    }
+
+    void recordBackward(int layer, long nanos) {
+        backwardNanos[layer].add(nanos);
+    }
+
+    /**
+     * Records the norm of each layer's gradients every {@code steps} weight updates, or never if 0, the default. A
+     * mini-batch step that records them makes an extra pass over every gradient, while a per-example step only passes
+     * over each layer's inputs and deltas.
+     */
+    @Override
+    public void setGradientNormInterval(int steps) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("Interval must not be negative");
+        }
+        this.gradientNormInterval = steps;
+    }
+
+    @Override
+    public int getGradientNormInterval() {
+        return gradientNormInterval;
+    }
+
+    /**
+     * Whether the step about to be recorded should record gradient norms. Steps are counted across threads without
+     * synchronization, so concurrent training may record slightly more or less often than the interval.
+     */
+    boolean recordsGradientNorms() {
+        int interval = gradientNormInterval;
+        return interval > 0 && steps.sum() % interval == 0;
+    }
+
+    void recordGradients(Gradients gradients) {
+        for (int layer = 0; layer < gradients.size(); layer++) {
+            double[] layerGradients = gradients.get(layer);
+            recordGradientNorm(layer, Math.sqrt(MathUtils.dot(layerGradients, 0, layerGradients, 0, layerGradients.length)));
+        }
+    }
+
+    void recordGradientNorm(int layer, double norm) {
+        gradientNorms.set(layer, Double.doubleToRawLongBits(norm));
+    }
+
+    void recordStep(int examples, long nanos, long allocatedBytes) {
+        this.examples.add(examples);
+        steps.increment();
+        stepNanos.add(nanos);
+        this.allocatedBytes.add(allocatedBytes);
+
+        for (TrainingListener listener : listeners) {
+            listener.onStep(examples, nanos, ALLOCATION_MEASURABLE ? allocatedBytes : -1);
+        }
+    }
+
+    void recordEpoch(int epoch, double loss, double validationLoss) {
+        this.epoch = epoch;
+        this.loss = loss;
+        if (!Double.isNaN(validationLoss)) {
+            this.validationLoss = validationLoss;
+        }
+
+        for (TrainingListener listener : listeners) {
+            listener.onEpoch(epoch, loss, validationLoss);
+        }
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread so far, or 0 if the JVM can't measure it.
+     */
+    static long allocatedBytes() {
+        return ALLOCATION_MEASURABLE ? ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    @Override
+    public long getExamples() {
+        return examples.sum();
+    }
+
+    @Override
+    public long getSteps() {
+        return steps.sum();
+    }
+
+    /**
+     * Gets the examples trained on per second of time spent in weight updates, summed over every training thread.
+     */
+    @Override
+    public double getExamplesPerSecond() {
+        long nanos = stepNanos.sum();
+        return nanos == 0 ? 0 : examples.sum() / (nanos / 1e9);
+    }
+
+    /**
+     * Gets the mean memory allocated per weight update, or -1 if the JVM can't measure it.
+     */
+    @Override
+    public double getAllocatedBytesPerStep() {
+        long steps = this.steps.sum();
+        return !ALLOCATION_MEASURABLE ? -1 : steps == 0 ? 0 : (double) allocatedBytes.sum() / steps;
+    }
+
+    /**
+     * Gets the total time spent passing forwards through each layer, for both training and prediction.
+     */
+    @Override
+    public long[] getForwardNanos() {
+        return Arrays.stream(forwardNanos).mapToLong(LongAdder::sum).toArray();
+    }
+
+    /**
+     * Gets the total time spent passing errors backwards through each layer.
+     */
+    @Override
+    public long[] getBackwardNanos() {
+        return Arrays.stream(backwardNanos).mapToLong(LongAdder::sum).toArray();
+    }
+
+    /**
+     * Gets the L2 norm of each layer's gradients in the last step that recorded them, or NaN before the first, see
+     * {@link #setGradientNormInterval(int)}. For a per-example step these are the gradients of that one example.
+     */
+    @Override
+    public double[] getGradientNorms() {
+        double[] norms = new double[gradientNorms.length()];
+        for (int i = 0; i < norms.length; i++) {
+            norms[i] = Double.longBitsToDouble(gradientNorms.get(i));
+        }
+        return norms;
+    }
+
+    @Override
+    public int getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public double getLoss() {
+        return loss;
+    }
+
+    @Override
+    public double getValidationLoss() {
+        return validationLoss;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < forwardNanos.length; i++) {
+            forwardNanos[i].reset();
+            backwardNanos[i].reset();
+            gradientNorms.set(i, Double.doubleToRawLongBits(Double.NaN));
+        }
+        examples.reset();
+        steps.reset();
+        stepNanos.reset();
+        allocatedBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "Instrumentation{examples=" + getExamples() + ", steps=" + getSteps() + ", examplesPerSecond=" + String.format("%.0f", getExamplesPerSecond()) + ", allocatedBytesPerStep="
+                + String.format("%.1f", getAllocatedBytesPerStep()) + ", forwardNanos=" + Arrays.toString(getForwardNanos()) + ", backwardNanos=" + Arrays.toString(getBackwardNanos())
+                + ", gradientNorms=" + Arrays.toString(getGradientNorms()) + ", epoch=" + epoch + ", loss=" + loss + ", validationLoss=" + validationLoss + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.tomallton.neuralnetwork;
+
+/**
+ * The attributes of an {@link Instrumentation} exported over JMX.
+ */
+public interface InstrumentationMXBean {
+
+    long getExamples();
+
+    long getSteps();
+
+    double getExamplesPerSecond();
+
+    double getAllocatedBytesPerStep();
+
+    long[] getForwardNanos();
+
+    long[] getBackwardNanos();
+
+    double[] getGradientNorms();
+
+    int getGradientNormInterval();
+
+    void setGradientNormInterval(int steps);
+
+    int getEpoch();
+
+    double getLoss();
+
+    double getValidationLoss();
+
+    void reset();
+}
\ No newline at end of file
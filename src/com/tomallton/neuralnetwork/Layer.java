@@ -1,17 +1,31 @@
 package com.tomallton.neuralnetwork;
 
 import java.util.Arrays;
+import java.util.SplittableRandom;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import com.tomallton.neuralnetwork.util.MathUtils;
 import com.tomallton.neuralnetwork.util.StringUtils;
 
 public class Layer implements Function<double[], double[]> {
-    private final double[][] weights;
+    // number of weights from which a layer is initialized in parallel
+    private static final int PARALLEL_INITIALIZATION_SIZE = 1 << 16;
+
+    private final int inputSize;
     private final boolean bias;
     private final DerivableFunction activationFunction;
 
-    public double[] lastOutputBeforeActivation, lastOutput;
+    /**
+     * Weights stored row-major by output neuron, each row holding one weight per input followed by the bias weight.
+     * The weight from input {@code i} to output {@code o} is at {@code o * stride + i}.
+     */
+    private WeightStorage weights;
+    private int outputSize;
+
+    // pre-defined weights indexed [inputNeuron][outputNeuron] with some rows left null or empty, kept until the network
+    // knows the output size and fills in the missing rows
+    private double[][] partialWeights;
 
     // initialize weights randomly
     public Layer(int neurons) {
@@ -22,12 +36,14 @@ public class Layer implements Function<double[], double[]> {
         this(neurons, bias, ActivationFunction.NONE);
     }
 
-    public Layer(int neurons, ActivationFunction activationFunction) {
+    public Layer(int neurons, DerivableFunction activationFunction) {
         this(neurons, true, activationFunction);
     }
 
-    public Layer(int neurons, boolean bias, ActivationFunction activationFunction) {
-        this(new double[neurons + (bias ? 1 : 0)][], bias, activationFunction);
+    public Layer(int neurons, boolean bias, DerivableFunction activationFunction) {
+        this.inputSize = neurons;
+        this.bias = bias;
+        this.activationFunction = activationFunction;
     }
 
     // pre-defined weights
@@ -39,52 +55,267 @@ public class Layer implements Function<double[], double[]> {
         this(weights, bias, ActivationFunction.NONE);
     }
 
-    public Layer(double[][] weights, ActivationFunction activationFunction) {
+    public Layer(double[][] weights, DerivableFunction activationFunction) {
         this(weights, true, activationFunction);
     }
 
-    public Layer(double[][] weights, boolean bias, ActivationFunction activationFunction) {
+    /**
+     * Creates a layer from weights indexed [inputNeuron][outputNeuron], with the bias weights as the last row. Rows
+     * left null or empty are initialized by the network, like every row of a layer without pre-defined weights.
+     */
+    public Layer(double[][] weights, boolean bias, DerivableFunction activationFunction) {
+        double[] defined = Arrays.stream(weights).filter(neuron -> neuron != null && neuron.length > 0).findFirst().orElse(null);
         for (double[] neuron : weights) {
-            if (neuron != null && neuron.length > 0 && neuron.length != weights[0].length) {
+            if (neuron != null && neuron.length > 0 && neuron.length != defined.length) {
                 throw new IllegalArgumentException("Neurons have different number of weights");
             }
         }
-        this.weights = weights;
+        this.inputSize = weights.length + (bias ? -1 : 0);
+        this.bias = bias;
+        this.activationFunction = activationFunction;
+
+        if (Arrays.stream(weights).anyMatch(neuron -> neuron == null || neuron.length == 0)) {
+            this.partialWeights = defined == null ? null : weights;
+        } else {
+            this.outputSize = defined.length;
+            double[] data = new double[outputSize * getStride()];
+            copyRows(weights, data);
+            this.weights = new HeapWeightStorage(data);
+        }
+    }
+
+    // copies the defined rows of weights indexed [inputNeuron][outputNeuron] into the flat layout
+    private void copyRows(double[][] weights, double[] data) {
+        for (int neuron = 0; neuron < weights.length; neuron++) {
+            if (weights[neuron] != null && weights[neuron].length > 0) {
+                for (int weight = 0; weight < outputSize; weight++) {
+                    data[weight * getStride() + neuron] = weights[neuron][weight];
+                }
+            }
+        }
+    }
+
+    // flat weights, see getWeightData
+    Layer(int inputSize, int outputSize, boolean bias, DerivableFunction activationFunction, double[] weights) {
+        this(inputSize, outputSize, bias, activationFunction, new HeapWeightStorage(weights));
+    }
+
+    // weights in any storage, laid out as in getWeightData
+    public Layer(int inputSize, int outputSize, boolean bias, DerivableFunction activationFunction, WeightStorage weights) {
+        if (weights.size() != outputSize * (inputSize + (bias ? 1 : 0))) {
+            throw new IllegalArgumentException("Expected " + outputSize * (inputSize + (bias ? 1 : 0)) + " weights but got " + weights.size());
+        }
+        this.inputSize = inputSize;
         this.bias = bias;
         this.activationFunction = activationFunction;
+        this.outputSize = outputSize;
+        this.weights = weights;
+    }
+
+    // copy of another layer
+    public Layer(Layer layer) {
+        this.inputSize = layer.inputSize;
+        this.bias = layer.bias;
+        this.activationFunction = layer.activationFunction;
+        this.outputSize = layer.outputSize;
+        this.weights = layer.weights == null ? null : layer.weights.copy();
+        this.partialWeights = layer.partialWeights == null ? null : Arrays.stream(layer.partialWeights).map(neuron -> neuron == null ? null : neuron.clone()).toArray(double[][]::new);
+    }
+
+    /**
+     * Allocates and fills the weights of a layer created without pre-defined weights, or the missing rows of one with
+     * some pre-defined. Every row gets a generator split from the given one in order, so large layers can fill their
+     * rows in parallel with the same result.
+     */
+    void initialize(int outputSize, WeightInitializer initializer, SplittableRandom random) {
+        if (partialWeights != null) {
+            int defined = Arrays.stream(partialWeights).filter(neuron -> neuron != null && neuron.length > 0).findFirst().get().length;
+            if (defined != outputSize) {
+                throw new IllegalArgumentException("Pre-defined weights have " + defined + " outputs but the next layer has " + outputSize + " inputs");
+            }
+        }
+        this.outputSize = outputSize;
+        int stride = getStride();
+        double[] weights = new double[outputSize * stride];
+
+        SplittableRandom[] rows = new SplittableRandom[outputSize];
+        for (int neuron = 0; neuron < outputSize; neuron++) {
+            rows[neuron] = random.split();
+        }
+
+        IntStream neurons = IntStream.range(0, outputSize);
+        (weights.length < PARALLEL_INITIALIZATION_SIZE ? neurons : neurons.parallel())
+                .forEach(neuron -> initializer.fill(weights, neuron * stride, inputSize, outputSize, bias, rows[neuron]));
+
+        if (partialWeights != null) {
+            copyRows(partialWeights, weights);
+            partialWeights = null;
+        }
+        this.weights = new HeapWeightStorage(weights);
+    }
+
+    boolean isInitialized() {
+        return weights != null;
     }
 
     @Override
     public double[] apply(double[] input) {
+        return apply(input, new double[getOutputSize()], new double[getOutputSize()]);
+    }
+
+    /**
+     * Applies the layer to an input, writing the outputs before and after activation into the given arrays.
+     *
+     * @return The output after activation.
+     */
+    public double[] apply(double[] input, double[] outputBeforeActivation, double[] output) {
         if (input.length != getInputSize()) {
             throw new IllegalArgumentException(StringUtils.toString(input) + " does not have a length of " + getInputSize());
         }
-        this.lastOutputBeforeActivation = new double[getOutputSize()];
 
-        double[] output = new double[getOutputSize()];
+        for (int neuron = 0, row = 0; neuron < output.length; neuron++, row += getStride()) {
+            outputBeforeActivation[neuron] = weights.dot(row, input, 0, inputSize) + (bias ? weights.get(row + inputSize) : 0);
+        }
+
+        System.arraycopy(outputBeforeActivation, 0, output, 0, output.length);
 
-        for (int weight = 0; weight < output.length; weight++) {
-            for (int neuron = 0; neuron < weights.length; neuron++) {
-                output[weight] += (neuron >= input.length && bias ? 1 : input[neuron]) * weights[neuron][weight];
+        // apply activation function to output
+        return activationFunction.apply(output);
+    }
+
+    /**
+     * Applies the layer to a sparse input, reading only the weights of its non-zero inputs.
+     *
+     * @return The output after activation.
+     */
+    public double[] apply(SparseVector input, double[] outputBeforeActivation, double[] output) {
+        if (input.getSize() != getInputSize()) {
+            throw new IllegalArgumentException(input + " does not have a size of " + getInputSize());
+        }
+
+        for (int neuron = 0, row = 0; neuron < output.length; neuron++, row += getStride()) {
+            outputBeforeActivation[neuron] = weights.dot(row, input) + (bias ? weights.get(row + inputSize) : 0);
+        }
+
+        System.arraycopy(outputBeforeActivation, 0, output, 0, output.length);
+
+        // apply activation function to output
+        return activationFunction.apply(output);
+    }
+
+    /**
+     * Applies the layer to a batch of inputs, stored as a row-major matrix with one row per example. The outputs before
+     * and after activation are written to matrices in the same layout.
+     */
+    public void apply(double[] input, int rows, double[] outputBeforeActivation, double[] output) {
+        int size = rows * outputSize;
+
+        double[] data = weights.array();
+
+        if (data != null) {
+            Arrays.fill(outputBeforeActivation, 0, size, 0);
+            MathUtils.multiplyTransposed(rows, outputSize, inputSize, input, 0, inputSize, data, 0, getStride(), outputBeforeActivation, 0, outputSize);
+        } else {
+            // one pass over the weights per example, each row read once per example as in apply(double[])
+            for (int row = 0; row < rows; row++) {
+                for (int neuron = 0; neuron < outputSize; neuron++) {
+                    outputBeforeActivation[row * outputSize + neuron] = weights.dot(neuron * getStride(), input, row * inputSize, inputSize);
+                }
             }
         }
 
-        this.lastOutputBeforeActivation = output.clone();
+        if (bias) {
+            for (int row = 0; row < size; row += outputSize) {
+                for (int neuron = 0; neuron < outputSize; neuron++) {
+                    outputBeforeActivation[row + neuron] += weights.get(neuron * getStride() + inputSize);
+                }
+            }
+        }
+
+        System.arraycopy(outputBeforeActivation, 0, output, 0, size);
 
         // apply activation function to output
-        MathUtils.apply(output, activationFunction);
+        activationFunction.apply(output, 0, size);
+    }
 
-        this.lastOutput = output.clone();
+    /**
+     * Propagates a batch of deltas, one row of {@code outputSize} per example, back through the weights into
+     * {@code previousDeltas}, one row of {@code inputSize} per example, adding to its values.
+     */
+    void backward(double[] deltas, int rows, double[] previousDeltas) {
+        double[] data = weights.array();
 
-        return output;
+        if (data != null) {
+            MathUtils.multiply(rows, inputSize, outputSize, deltas, 0, outputSize, data, 0, getStride(), previousDeltas, 0, inputSize);
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int neuron = 0; neuron < outputSize; neuron++) {
+                weights.addTo(deltas[row * outputSize + neuron], neuron * getStride(), previousDeltas, row * inputSize, inputSize);
+            }
+        }
     }
 
+    /**
+     * Gets a copy of the weights indexed [inputNeuron][outputNeuron], with the bias weights as the last row.
+     *
+     * @deprecated The weights are no longer stored in this layout, so this returns a copy and writes to it do not
+     *             change the layer, unlike in earlier versions. Read and write the weights through
+     *             {@link #getWeightData()} or {@link #getWeightStorage()} instead.
+     */
+    @Deprecated
     public double[][] getWeights() {
+        double[][] weights = new double[getStride()][getOutputSize()];
+
+        for (int weight = 0, row = 0; weight < getOutputSize(); weight++, row += getStride()) {
+            for (int neuron = 0; neuron < weights.length; neuron++) {
+                weights[neuron][weight] = this.weights.get(row + neuron);
+            }
+        }
+
+        return weights;
+    }
+
+    /**
+     * Gets the underlying row-major weight array, see {@link #getStride()}.
+     *
+     * @throws IllegalStateException If the weights are not stored on the heap, see {@link #getWeightStorage()}.
+     */
+    public double[] getWeightData() {
+        double[] data = weights.array();
+        if (data == null) {
+            throw new IllegalStateException("Weights are stored off-heap");
+        }
+        return data;
+    }
+
+    /**
+     * Gets the storage holding the weights, laid out as in {@link #getWeightData()}.
+     */
+    public WeightStorage getWeightStorage() {
         return weights;
     }
 
+    public int getWeightCount() {
+        return weights.size();
+    }
+
+    /**
+     * Gets the distance between the first weights of consecutive output neurons in {@link #getWeightData()}.
+     */
+    public int getStride() {
+        return inputSize + (bias ? 1 : 0);
+    }
+
     public double[] getBias() {
-        return bias ? weights[weights.length - 1] : null;
+        if (!bias) {
+            return null;
+        }
+        double[] bias = new double[getOutputSize()];
+        for (int weight = 0; weight < bias.length; weight++) {
+            bias[weight] = weights.get(weight * getStride() + inputSize);
+        }
+        return bias;
     }
 
     public boolean hasBias() {
@@ -96,23 +327,16 @@ public class Layer implements Function<double[], double[]> {
     }
 
     public int getInputSize() {
-        return weights.length + (bias ? -1 : 0);
+        return inputSize;
     }
 
     public int getOutputSize() {
-        return weights[0].length;
-    }
-
-    public double[] getLastOutput() {
-        return lastOutput;
-    }
-
-    public double[] getLastOutputBeforeActivation() {
-        return lastOutputBeforeActivation;
+        return outputSize;
     }
 
     @Override
     public String toString() {
+        double[][] weights = getWeights();
         String weightsString = StringUtils.toString(bias ? Arrays.copyOfRange(weights, 0, weights.length - 1) : weights);
         return "Layer{weights=" + weightsString + ", " + (bias ? "bias=" + StringUtils.toString(getBias()) + ", " : "") + "activationFunction=" + activationFunction + "}";
     }
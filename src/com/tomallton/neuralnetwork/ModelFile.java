@@ -0,0 +1,285 @@
+package com.tomallton.neuralnetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Saves and loads networks in a compact binary format. All values are little-endian:
+ *
+ * <pre>
+ * header  magic "NNET", int version, int layer count, int flags, long CRC32 of everything after the header
+ * layers  per layer: int input size, int output size, byte bias, byte activation function ordinal, 6 bytes padding
+ * weights per layer: the doubles of {@link Layer#getWeightStorage()}, or with the float flag set the floats of
+ *         {@link FloatLayer#getWeightData()} padded to a multiple of 8 bytes
+ * </pre>
+ *
+ * Every section is a multiple of 8 bytes, so the weights of each layer are aligned for reading as doubles, and files
+ * with double-precision weights can be {@link #map(Path) mapped} and used in place.
+ */
+public class ModelFile {
+    private static final int MAGIC = 0x54454E4E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24, LAYER_HEADER_SIZE = 16, CHECKSUM_OFFSET = 16;
+
+    // set in the flags of files storing single-precision weights
+    private static final int FLOAT_WEIGHTS = 1;
+
+    // number of bytes of weights written per buffer when saving
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Saves a network. The file is written next to its destination and then moved over it, so a process that has
+     * {@link #map(Path) mapped} an earlier model at the same path keeps reading the earlier model.
+     */
+    public static void save(NeuralNetwork network, Path path) throws IOException {
+        save(path, 0, Stream.of(network.getLayers())
+                .map(layer -> new StoredLayer(layer.getInputSize(), layer.getOutputSize(), layer.hasBias(), layer.getActivationFunction(), layer.getWeightStorage()))
+                .toArray(StoredLayer[]::new));
+    }
+
+    public static void save(FloatNeuralNetwork network, Path path) throws IOException {
+        save(path, FLOAT_WEIGHTS, Stream.of(network.getLayers())
+                .map(layer -> new StoredLayer(layer.getInputSize(), layer.getOutputSize(), layer.hasBias(), layer.getActivationFunction(), layer.getWeightData()))
+                .toArray(StoredLayer[]::new));
+    }
+
+    /**
+     * Loads a network, converting it to double precision if it was saved with single-precision weights.
+     */
+    public static NeuralNetwork load(Path path) throws IOException {
+        return new NeuralNetwork(Stream.of(read(path, false, true)).map(StoredLayer::toLayer).toArray(Layer[]::new));
+    }
+
+    /**
+     * Maps a network saved with double-precision weights into memory for inference, using the weights of each layer in
+     * place rather than copying them onto the heap. Pages of the file are read as they are first used and are shared
+     * with any other process mapping the same file. The checksum is not verified, as that would read the whole file
+     * up front, so only the structure of the file is checked.
+     *
+     * @throws IOException If the file cannot be read, is truncated or was saved with single-precision weights.
+     */
+    public static FrozenNeuralNetwork map(Path path) throws IOException {
+        return map(path, false);
+    }
+
+    /**
+     * Maps a network as with {@link #map(Path)}, optionally verifying its checksum. Verifying reads every page of the
+     * file once before returning, so the time taken grows with the size of the model.
+     *
+     * @throws IOException If the file cannot be read, is corrupt or was saved with single-precision weights.
+     */
+    public static FrozenNeuralNetwork map(Path path, boolean verifyChecksum) throws IOException {
+        return new FrozenNeuralNetwork(Stream.of(read(path, true, verifyChecksum)).map(StoredLayer::toLayer).toArray(Layer[]::new), false);
+    }
+
+    /**
+     * Loads a network, converting it to single precision if it was saved with double-precision weights.
+     */
+    public static FloatNeuralNetwork loadFloat(Path path) throws IOException {
+        return new FloatNeuralNetwork(Stream.of(read(path, false, true)).map(StoredLayer::toFloatLayer).toArray(FloatLayer[]::new));
+    }
+
+    private static void save(Path path, int flags, StoredLayer[] layers) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + layers.length * LAYER_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(layers.length).putInt(flags).putLong(0);
+
+        for (StoredLayer layer : layers) {
+            if (!(layer.activationFunction instanceof ActivationFunction)) {
+                throw new IllegalArgumentException("Only built-in activation functions can be saved, not " + layer.activationFunction);
+            }
+            header.putInt(layer.inputSize).putInt(layer.outputSize);
+            header.put((byte) (layer.bias ? 1 : 0)).put((byte) ((ActivationFunction) layer.activationFunction).ordinal());
+            header.position(header.position() + 6);
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(header.array(), HEADER_SIZE, header.capacity() - HEADER_SIZE);
+
+        // rewriting a mapped file in place would pull its pages from under the process mapping it
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            write(temporary, header, checksum, layers);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void write(Path path, ByteBuffer header, CRC32 checksum, StoredLayer[] layers) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            header.flip();
+            write(channel, header);
+
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            double[] chunk = new double[CHUNK_SIZE / Double.BYTES];
+            for (StoredLayer layer : layers) {
+                if (layer.weights instanceof WeightStorage) {
+                    WeightStorage doubles = (WeightStorage) layer.weights;
+                    for (int from = 0; from < doubles.size(); from += chunk.length) {
+                        int length = Math.min(chunk.length, doubles.size() - from);
+                        doubles.get(from, chunk, 0, length);
+                        buffer.clear();
+                        buffer.asDoubleBuffer().put(chunk, 0, length);
+                        buffer.limit(length * Double.BYTES);
+                        write(channel, buffer, checksum);
+                    }
+                } else {
+                    float[] floats = (float[]) layer.weights;
+                    for (int from = 0; from < floats.length; from += CHUNK_SIZE / Float.BYTES) {
+                        int length = Math.min(CHUNK_SIZE / Float.BYTES, floats.length - from);
+                        buffer.clear();
+                        buffer.asFloatBuffer().put(floats, from, length);
+                        buffer.limit(length * Float.BYTES);
+                        write(channel, buffer, checksum);
+                    }
+                    if (floats.length % 2 != 0) {
+                        buffer.clear();
+                        buffer.putInt(0, 0).limit(Float.BYTES);
+                        write(channel, buffer, checksum);
+                    }
+                }
+            }
+
+            ByteBuffer checksumBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, checksum.getValue());
+            channel.write(checksumBuffer, CHECKSUM_OFFSET);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads a file by memory-mapping the weights of each layer, verifying its checksum without reading it onto the heap
+     * first. Each layer is mapped separately, so only a single layer's weights are limited to 2 GB.
+     *
+     * @param map Whether to keep double-precision weights in the mapped file rather than copying them.
+     * @param verifyChecksum Whether to verify the checksum, which reads every weight.
+     */
+    private static StoredLayer[] read(Path path, boolean map, boolean verifyChecksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_SIZE || read(channel, header, 0).getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a model file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported model file version " + header.getInt(4));
+            }
+            int layerCount = header.getInt(8);
+            boolean floatWeights = (header.getInt(12) & FLOAT_WEIGHTS) != 0;
+
+            if (map && floatWeights) {
+                throw new IOException(path + " stores single-precision weights, which cannot be mapped");
+            }
+            if (layerCount < 0 || HEADER_SIZE + (long) layerCount * LAYER_HEADER_SIZE > channel.size()) {
+                throw new IOException(path + " is truncated, the file is corrupt");
+            }
+
+            ByteBuffer layerHeaders = read(channel, ByteBuffer.allocate(layerCount * LAYER_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN), HEADER_SIZE);
+            CRC32 checksum = new CRC32();
+            checksum.update(layerHeaders.array());
+
+            StoredLayer[] layers = new StoredLayer[layerCount];
+            long position = HEADER_SIZE + layerCount * LAYER_HEADER_SIZE;
+
+            for (int i = 0; i < layerCount; i++) {
+                int layerHeader = i * LAYER_HEADER_SIZE;
+                int inputSize = layerHeaders.getInt(layerHeader), outputSize = layerHeaders.getInt(layerHeader + 4);
+                boolean bias = layerHeaders.get(layerHeader + 8) != 0;
+                int activationFunction = layerHeaders.get(layerHeader + 9);
+
+                // checked before the checksum, which is only known once every layer has been read
+                if (inputSize < 0 || outputSize < 0 || activationFunction < 0 || activationFunction >= ActivationFunction.values().length) {
+                    throw new IOException("Layer " + i + " of " + path + " has an invalid header, the file is corrupt");
+                }
+                long length = (long) outputSize * (inputSize + (bias ? 1 : 0));
+                long size = floatWeights ? (length + length % 2) * Float.BYTES : length * Double.BYTES;
+
+                if (size > Integer.MAX_VALUE || size > channel.size() - position) {
+                    throw new IOException("Layer " + i + " of " + path + " is truncated, the file is corrupt");
+                }
+                ByteBuffer weights = channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+                if (verifyChecksum) {
+                    checksum.update(weights.duplicate());
+                }
+
+                if (floatWeights) {
+                    float[] layerWeights = new float[(int) length];
+                    weights.asFloatBuffer().get(layerWeights);
+                    layers[i] = new StoredLayer(inputSize, outputSize, bias, ActivationFunction.values()[activationFunction], layerWeights);
+                } else if (map) {
+                    layers[i] = new StoredLayer(inputSize, outputSize, bias, ActivationFunction.values()[activationFunction], new OffHeapWeightStorage(weights));
+                } else {
+                    double[] layerWeights = new double[(int) length];
+                    weights.asDoubleBuffer().get(layerWeights);
+                    layers[i] = new StoredLayer(inputSize, outputSize, bias, ActivationFunction.values()[activationFunction], new HeapWeightStorage(layerWeights));
+                }
+                position += size;
+            }
+
+            if (position != channel.size()) {
+                throw new IOException(path + " is longer than its layers, the file is corrupt");
+            }
+            if (verifyChecksum && checksum.getValue() != header.getLong(CHECKSUM_OFFSET)) {
+                throw new IOException("Checksum of " + path + " does not match, the file is corrupt");
+            }
+            return layers;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        checksum.update(buffer.array(), 0, buffer.limit());
+        write(channel, buffer);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // a layer as stored in a file, with its weights as either a WeightStorage or a float[]
+    private static class StoredLayer {
+        private final int inputSize, outputSize;
+        private final boolean bias;
+        private final DerivableFunction activationFunction;
+        private final Object weights;
+
+        private StoredLayer(int inputSize, int outputSize, boolean bias, DerivableFunction activationFunction, Object weights) {
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+            this.bias = bias;
+            this.activationFunction = activationFunction;
+            this.weights = weights;
+        }
+
+        private Layer toLayer() {
+            if (weights instanceof WeightStorage) {
+                return new Layer(inputSize, outputSize, bias, activationFunction, (WeightStorage) weights);
+            }
+            return toFloatLayer().toLayer();
+        }
+
+        private FloatLayer toFloatLayer() {
+            if (weights instanceof float[]) {
+                return new FloatLayer(inputSize, outputSize, bias, activationFunction, (float[]) weights);
+            }
+            return new FloatLayer(toLayer());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.tomallton.neuralnetwork;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Gradient descent with momentum, moving each weight by a velocity that decays by the momentum each step and
+ * accumulates its gradients.
+ */
+public class Momentum implements Optimizer {
+    private final double momentum;
+
+    private double[][] velocities;
+
+    public Momentum() {
+        this(0.9);
+    }
+
+    public Momentum(double momentum) {
+        this.momentum = momentum;
+    }
+
+    @Override
+    public void beginStep(Layer[] layers) {
+        velocities = Optimizer.state(velocities, layers);
+    }
+
+    @Override
+    public void update(int layer, double[] weights, int weightsOffset, double[] gradients, int from, int to, double learningRate, int examples) {
+        double[] velocity = velocities[layer];
+        double rate = learningRate / examples;
+
+        for (int i = from; i < to; i++) {
+            velocity[i] = momentum * velocity[i] - rate * gradients[i];
+            weights[i - weightsOffset] += velocity[i];
+        }
+    }
+
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        Optimizer.writeState(out, velocities);
+    }
+
+    @Override
+    public void loadState(DataInput in, Layer[] layers) throws IOException {
+        velocities = Optimizer.readState(in, layers);
+    }
+
+    @Override
+    public String toString() {
+        return "Momentum{momentum=" + momentum + "}";
+    }
+}
\ No newline at end of file
@@ -1,28 +1,57 @@
 package com.tomallton.neuralnetwork;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.tomallton.neuralnetwork.data.Batch;
+import com.tomallton.neuralnetwork.data.DatasetView;
 import com.tomallton.neuralnetwork.util.MathUtils;
 
 public class NeuralNetwork implements Function<double[], double[]> {
+    private static final Optimizer STOCHASTIC_GRADIENT_DESCENT = new SGD();
+
     private final Layer[] layers;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(this));
+
+    private volatile Instrumentation instrumentation;
 
     public NeuralNetwork(List<Layer> layers) {
         this(layers.toArray(Layer[]::new));
     }
 
     public NeuralNetwork(Layer... layers) {
+        this(new SplittableRandom(), WeightInitializer.UNIFORM, layers);
+    }
+
+    public NeuralNetwork(long seed, Layer... layers) {
+        this(seed, WeightInitializer.UNIFORM, layers);
+    }
+
+    public NeuralNetwork(WeightInitializer initializer, Layer... layers) {
+        this(new SplittableRandom(), initializer, layers);
+    }
+
+    /**
+     * Creates a network, initializing the weights of layers created without pre-defined weights reproducibly from a
+     * seed. Each layer splits its own generator from the seed, so the weights of a layer do not depend on whether
+     * earlier layers had pre-defined weights.
+     */
+    public NeuralNetwork(long seed, WeightInitializer initializer, Layer... layers) {
+        this(new SplittableRandom(seed), initializer, layers);
+    }
+
+    private NeuralNetwork(SplittableRandom random, WeightInitializer initializer, Layer... layers) {
         // initialize layer weights
         for (int i = 0; i < layers.length; i++) {
             Layer layer = layers[i];
-            for (int j = 0; j < layer.getWeights().length; j++) {
-                if (layer.getWeights()[j] == null || layer.getWeights()[j].length == 0) {
-                    // last layer has same input and output size
-                    layer.getWeights()[j] = MathUtils.generate(i < layers.length - 1 ? layers[i + 1].getInputSize() : layer.getInputSize(), Math::random);
-                }
+            SplittableRandom layerRandom = random.split();
+            if (!layer.isInitialized()) {
+                // last layer has same input and output size
+                layer.initialize(i < layers.length - 1 ? layers[i + 1].getInputSize() : layer.getInputSize(), initializer, layerRandom);
             }
         }
 
@@ -37,59 +66,324 @@ public class NeuralNetwork implements Function<double[], double[]> {
 
     public double[] train(double[][] X, double[][] y, double learningRate) {
         double[] totalErrors = new double[X.length];
+        Workspace workspace = workspaces.get();
+
+        for (int i = 0; i < X.length; i++) {
+            totalErrors[i] = train(X[i], y[i], learningRate, workspace);
+        }
+
+        return totalErrors;
+    }
+
+    public void train(SparseVector[] X, double[][] y, double learningRate, int epochs) {
+        for (int i = 0; i < epochs; i++) {
+            train(X, y, learningRate);
+        }
+    }
+
+    /**
+     * Trains for one epoch on sparse examples, changing only the first layer's weights for each example's non-zero
+     * inputs.
+     *
+     * @return The error of each example.
+     */
+    public double[] train(SparseVector[] X, double[][] y, double learningRate) {
+        double[] totalErrors = new double[X.length];
+        Workspace workspace = workspaces.get();
 
         for (int i = 0; i < X.length; i++) {
-            double[] yPredict = predict(X[i]);
-            double[] yTarget = y[i];
+            totalErrors[i] = train(null, X[i], y[i], learningRate, workspace);
+        }
 
-            double error = 0.5 * MathUtils.sum(MathUtils.square(MathUtils.subtract(yTarget.clone(), yPredict)));
+        return totalErrors;
+    }
 
-            totalErrors[i] = error;
+    /**
+     * Trains on a single example, updating the weights straight away.
+     *
+     * @return The error of the example before the update.
+     */
+    double train(double[] x, double[] yTarget, double learningRate, Workspace workspace) {
+        return train(x, null, yTarget, learningRate, workspace);
+    }
 
-            if (error != 0) {
-                double[][][] errors = new double[layers.length + 1][][];
-                double[][][] weightChanges = new double[layers.length][][];
+    // trains on either a dense or a sparse example
+    private double train(double[] x, SparseVector sparseX, double[] yTarget, double learningRate, Workspace workspace) {
+        Instrumentation instrumentation = this.instrumentation;
+        long start = instrumentation == null ? 0 : System.nanoTime();
+        long allocated = instrumentation == null ? 0 : Instrumentation.allocatedBytes();
+        boolean recordGradientNorms = instrumentation != null && instrumentation.recordsGradientNorms();
+
+        double[] yPredict = forward(x, sparseX, workspace, instrumentation);
+        if (yTarget.length != yPredict.length) {
+            throw new IllegalArgumentException(yTarget.length + " targets given but expected " + yPredict.length);
+        }
 
-                // add errors from output layers
-                errors[layers.length] = new double[yPredict.length][1];
-                for (int j = 0; j < yPredict.length; j++) {
-                    errors[layers.length][j][0] = yPredict[j] - yTarget[j];
+        // errors from output layer
+        double[] gradientsErrorToOutput = workspace.getDeltas(layers.length - 1);
+        double error = 0;
+        for (int neuron = 0; neuron < yPredict.length; neuron++) {
+            gradientsErrorToOutput[neuron] = yPredict[neuron] - yTarget[neuron];
+            error += gradientsErrorToOutput[neuron] * gradientsErrorToOutput[neuron];
+        }
+        error *= 0.5;
+
+        if (error != 0) {
+            // backpropagate errors starting from the last layer
+            for (int layerIndex = layers.length - 1; layerIndex >= 0; layerIndex--) {
+                long layerStart = instrumentation == null ? 0 : System.nanoTime();
+                Layer layer = layers[layerIndex];
+                WeightStorage weights = layer.getWeightStorage();
+                int inputSize = layer.getInputSize(), stride = layer.getStride();
+
+                // if first hidden layer, last layer input is the actual input, or null if it is sparse
+                double[] lastInput = layerIndex == 0 ? x : workspace.getOutput(layerIndex - 1);
+                double[] previousDeltas = layerIndex == 0 ? null : workspace.getDeltas(layerIndex - 1);
+                if (previousDeltas != null) {
+                    Arrays.fill(previousDeltas, 0);
                 }
 
-                // backpropagate errors starting from the last layer
-                for (int layerIndex = layers.length - 1; layerIndex >= 0; layerIndex--) {
-                    Layer layer = layers[layerIndex];
+                // gradients of the outputs with respect to the outputs before activation, replaced in turn by the
+                // scale of the change to each neuron's weights
+                double[] deltas = workspace.getDeltas(layerIndex);
+                double[] scales = layer.getActivationFunction().derivative(workspace.getOutputBeforeActivation(layerIndex), workspace.getDerivatives(layerIndex));
 
-                    // if first hidden layer, last layer input is the actual input
-                    double[] lastInput = layerIndex == 0 ? X[i] : layers[layerIndex - 1].getLastOutput();
+                for (int neuron = 0, row = 0; neuron < layer.getOutputSize(); neuron++, row += stride) {
+                    double gradientOutputToNet = scales[neuron];
+                    double gradientErrorToOutput = deltas[neuron];
 
-                    errors[layerIndex] = new double[layer.getWeights().length][layer.getOutputSize()];
-                    weightChanges[layerIndex] = new double[layer.getWeights().length][layer.getOutputSize()];
+                    deltas[neuron] = gradientOutputToNet * gradientErrorToOutput;
+                    scales[neuron] = -learningRate * gradientErrorToOutput * gradientOutputToNet;
 
-                    for (int neuronIndex = 0; neuronIndex < layer.getWeights().length; neuronIndex++) {
-                        double gradientNetToWeight = layer.hasBias() && neuronIndex >= lastInput.length ? 1 : lastInput[neuronIndex];
+                    // sum errors flowing into each output of the previous layer, before the weights change
+                    if (previousDeltas != null) {
+                        weights.addTo(deltas[neuron], row, previousDeltas, 0, inputSize);
+                    }
+                }
 
-                        for (int weightIndex = 0; weightIndex < layer.getWeights()[neuronIndex].length; weightIndex++) {
-                            // sum errors from the previous layer
-                            double gradientOutputToNet = layer.getActivationFunction().derivative(layer.getLastOutputBeforeActivation()[weightIndex]);
-                            double gradientErrorToOutput = MathUtils.sum(errors[layerIndex + 1][weightIndex]);
+                // the gradients are the outer product of the deltas and the inputs, so their norm is the product of
+                // their norms
+                if (recordGradientNorms) {
+                    double inputNorm = lastInput == null ? MathUtils.dot(sparseX.getValues(), 0, sparseX.getValues(), 0, sparseX.getNonZeroCount())
+                            : MathUtils.dot(lastInput, 0, lastInput, 0, inputSize);
+                    double deltaNorm = MathUtils.dot(deltas, 0, deltas, 0, layer.getOutputSize());
+                    instrumentation.recordGradientNorm(layerIndex, Math.sqrt(deltaNorm * (inputNorm + (layer.hasBias() ? 1 : 0))));
+                }
 
-                            errors[layerIndex][neuronIndex][weightIndex] = gradientOutputToNet * gradientErrorToOutput * layer.getWeights()[neuronIndex][weightIndex];
-                            weightChanges[layerIndex][neuronIndex][weightIndex] = -learningRate * gradientErrorToOutput * gradientOutputToNet * gradientNetToWeight;
-                        }
+                // the previous layer's deltas are complete, so this layer's weights can change in place
+                for (int neuron = 0, row = 0; neuron < layer.getOutputSize(); neuron++, row += stride) {
+                    if (lastInput == null) {
+                        weights.add(scales[neuron], sparseX, row);
+                    } else {
+                        weights.add(scales[neuron], lastInput, 0, row, inputSize);
+                    }
+                    if (layer.hasBias()) {
+                        weights.set(row + inputSize, weights.get(row + inputSize) + scales[neuron]);
                     }
                 }
 
-                // apply weight changes
-                for (int layerIndex = 0; layerIndex < weightChanges.length; layerIndex++) {
-                    MathUtils.add(layers[layerIndex].getWeights(), weightChanges[layerIndex]);
+                if (instrumentation != null) {
+                    instrumentation.recordBackward(layerIndex, System.nanoTime() - layerStart);
                 }
             }
         }
 
+        if (instrumentation != null) {
+            instrumentation.recordStep(1, System.nanoTime() - start, Instrumentation.allocatedBytes() - allocated);
+        }
+        return error;
+    }
+
+    public void train(double[][] X, double[][] y, double learningRate, int epochs, int batchSize) {
+        train(X, y, learningRate, epochs, batchSize, STOCHASTIC_GRADIENT_DESCENT);
+    }
+
+    /**
+     * Trains using mini-batch gradient descent, updating the weights once per batch with the given optimizer.
+     */
+    public void train(double[][] X, double[][] y, double learningRate, int epochs, int batchSize, Optimizer optimizer) {
+        BatchWorkspace workspace = new BatchWorkspace(this, batchSize);
+        Gradients gradients = new Gradients(this);
+
+        for (int i = 0; i < epochs; i++) {
+            trainBatches(X, y, learningRate, workspace, gradients, optimizer);
+        }
+    }
+
+    /**
+     * Trains using mini-batch gradient descent, visiting the examples in a new random order drawn from a seed every
+     * epoch. Batches are gathered straight from the rows the view selects, which are never copied otherwise.
+     */
+    public void train(DatasetView data, double learningRate, int epochs, int batchSize, Optimizer optimizer, long seed) {
+        DatasetView order = data.copy();
+        SplittableRandom random = new SplittableRandom(seed);
+        Batch batch = order.newBatch(batchSize);
+        BatchWorkspace workspace = new BatchWorkspace(this, batchSize);
+        Gradients gradients = new Gradients(this);
+
+        for (int i = 0; i < epochs; i++) {
+            order.shuffle(random);
+            for (int from = 0; order.read(from, batch); from += batchSize) {
+                train(batch, learningRate, workspace, gradients, optimizer);
+            }
+        }
+    }
+
+    /**
+     * Trains for one epoch using mini-batch gradient descent, updating the weights once per batch with the mean gradient
+     * of its examples.
+     *
+     * @return The error of each example.
+     */
+    public double[] trainBatches(double[][] X, double[][] y, double learningRate, int batchSize) {
+        return trainBatches(X, y, learningRate, batchSize, STOCHASTIC_GRADIENT_DESCENT);
+    }
+
+    public double[] trainBatches(double[][] X, double[][] y, double learningRate, int batchSize, Optimizer optimizer) {
+        return trainBatches(X, y, learningRate, new BatchWorkspace(this, batchSize), new Gradients(this), optimizer);
+    }
+
+    double[] trainBatches(double[][] X, double[][] y, double learningRate, BatchWorkspace workspace, Gradients gradients) {
+        return trainBatches(X, y, learningRate, workspace, gradients, STOCHASTIC_GRADIENT_DESCENT);
+    }
+
+    double[] trainBatches(double[][] X, double[][] y, double learningRate, BatchWorkspace workspace, Gradients gradients, Optimizer optimizer) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("Length of arrays are not the same");
+        }
+        double[] totalErrors = new double[X.length];
+
+        for (int from = 0; from < X.length; from += workspace.getCapacity()) {
+            int rows = Math.min(workspace.getCapacity(), X.length - from);
+
+            for (int row = 0; row < rows; row++) {
+                System.arraycopy(X[from + row], 0, workspace.getInput(), row * getInputSize(), getInputSize());
+                System.arraycopy(y[from + row], 0, workspace.getTarget(), row * getOutputSize(), getOutputSize());
+            }
+
+            trainBatch(workspace.getInput(), workspace.getTarget(), rows, learningRate, workspace, gradients, optimizer);
+
+            System.arraycopy(workspace.getErrors(), 0, totalErrors, from, rows);
+        }
+
         return totalErrors;
     }
 
+    /**
+     * Takes one gradient descent step on a batch of examples read from a dataset.
+     */
+    public void train(Batch batch, double learningRate, BatchWorkspace workspace, Gradients gradients) {
+        train(batch, learningRate, workspace, gradients, STOCHASTIC_GRADIENT_DESCENT);
+    }
+
+    public void train(Batch batch, double learningRate, BatchWorkspace workspace, Gradients gradients, Optimizer optimizer) {
+        trainBatch(batch.getFeatures(), batch.getLabels(), batch.getRows(), learningRate, workspace, gradients, optimizer);
+    }
+
+    /**
+     * Takes one gradient descent step on a batch of examples, using the mean gradient of the batch. Inputs and targets
+     * are row-major matrices with one row per example.
+     */
+    public void trainBatch(double[] x, double[] y, int rows, double learningRate, BatchWorkspace workspace, Gradients gradients) {
+        trainBatch(x, y, rows, learningRate, workspace, gradients, STOCHASTIC_GRADIENT_DESCENT);
+    }
+
+    public void trainBatch(double[] x, double[] y, int rows, double learningRate, BatchWorkspace workspace, Gradients gradients, Optimizer optimizer) {
+        Instrumentation instrumentation = this.instrumentation;
+        long start = instrumentation == null ? 0 : System.nanoTime();
+        long allocated = instrumentation == null ? 0 : Instrumentation.allocatedBytes();
+
+        gradients.clear();
+        computeGradients(x, y, rows, workspace, gradients);
+        optimizer.step(layers, gradients, learningRate, rows);
+
+        if (instrumentation != null) {
+            if (instrumentation.recordsGradientNorms()) {
+                instrumentation.recordGradients(gradients);
+            }
+            instrumentation.recordStep(rows, System.nanoTime() - start, Instrumentation.allocatedBytes() - allocated);
+        }
+    }
+
+    /**
+     * Passes a batch of examples forwards and backwards through the network, adding the gradients of their summed error
+     * to {@code gradients}. Inputs and targets are row-major matrices with one row per example, and the error of each
+     * example is kept in the workspace.
+     */
+    public void computeGradients(double[] x, double[] y, int rows, BatchWorkspace workspace, Gradients gradients) {
+        Instrumentation instrumentation = this.instrumentation;
+        forward(layers, x, rows, workspace, instrumentation);
+
+        // errors from output layer
+        double[] output = workspace.getOutput(layers.length - 1);
+        double[] deltas = workspace.getDeltas(layers.length - 1);
+
+        for (int row = 0, i = 0; row < rows; row++) {
+            double error = 0;
+            for (int neuron = 0; neuron < getOutputSize(); neuron++, i++) {
+                deltas[i] = output[i] - y[i];
+                error += deltas[i] * deltas[i];
+            }
+            workspace.getErrors()[row] = 0.5 * error;
+        }
+
+        // backpropagate errors starting from the last layer
+        for (int layerIndex = layers.length - 1; layerIndex >= 0; layerIndex--) {
+            long layerStart = instrumentation == null ? 0 : System.nanoTime();
+            Layer layer = layers[layerIndex];
+            int inputSize = layer.getInputSize(), outputSize = layer.getOutputSize(), stride = layer.getStride();
+            int size = rows * outputSize;
+
+            // gradients with respect to the outputs before activation
+            deltas = workspace.getDeltas(layerIndex);
+            double[] derivatives = layer.getActivationFunction().derivative(workspace.getOutputBeforeActivation(layerIndex), workspace.getDerivatives(layerIndex), 0, size);
+            for (int i = 0; i < size; i++) {
+                deltas[i] *= derivatives[i];
+            }
+
+            // if first hidden layer, last layer input is the actual input
+            double[] lastInput = layerIndex == 0 ? x : workspace.getOutput(layerIndex - 1);
+            double[] layerGradients = gradients.get(layerIndex);
+
+            MathUtils.transposeMultiply(outputSize, inputSize, rows, deltas, 0, outputSize, lastInput, 0, inputSize, layerGradients, 0, stride);
+            if (layer.hasBias()) {
+                for (int i = 0; i < size; i += outputSize) {
+                    for (int neuron = 0; neuron < outputSize; neuron++) {
+                        layerGradients[neuron * stride + inputSize] += deltas[i + neuron];
+                    }
+                }
+            }
+
+            // gradients with respect to the outputs of the previous layer
+            if (layerIndex > 0) {
+                double[] previousDeltas = workspace.getDeltas(layerIndex - 1);
+                Arrays.fill(previousDeltas, 0, rows * inputSize, 0);
+                layer.backward(deltas, rows, previousDeltas);
+            }
+
+            if (instrumentation != null) {
+                instrumentation.recordBackward(layerIndex, System.nanoTime() - layerStart);
+            }
+        }
+    }
+
+    /**
+     * Moves the weights of every layer against their gradients.
+     */
+    public void applyGradients(Gradients gradients, double learningRate) {
+        for (int layerIndex = 0; layerIndex < layers.length; layerIndex++) {
+            WeightStorage weights = layers[layerIndex].getWeightStorage();
+            weights.add(-learningRate, gradients.get(layerIndex), 0, 0, weights.size());
+        }
+    }
+
+    /**
+     * Moves the weights of every layer against their gradients, summed over a number of examples, using an optimizer.
+     */
+    public void applyGradients(Gradients gradients, double learningRate, int examples, Optimizer optimizer) {
+        optimizer.step(layers, gradients, learningRate, examples);
+    }
+
     @Override
     public double[] apply(double[] x) {
         return predict(x);
@@ -106,15 +400,162 @@ public class NeuralNetwork implements Function<double[], double[]> {
     }
 
     public double[] predict(double... x) {
-        double[] output = x.clone();
+        return predictInto(x, new double[getOutputSize()]);
+    }
 
-        for (Layer layer : layers) {
-            output = layer.apply(output);
+    /**
+     * Predicts the output for an input, writing it into {@code out}. Uses a workspace reused by the calling thread, so
+     * no memory is allocated once the thread has made its first prediction.
+     */
+    public double[] predictInto(double[] x, double[] out) {
+        return predictInto(x, out, workspaces.get());
+    }
+
+    public double[] predictInto(double[] x, double[] out, Workspace workspace) {
+        double[] output = forward(x, workspace);
+        System.arraycopy(output, 0, out, 0, output.length);
+        return out;
+    }
+
+    public double[][] predict(SparseVector[] X) {
+        double[][] output = new double[X.length][];
+
+        for (int i = 0; i < X.length; i++) {
+            output[i] = predict(X[i]);
         }
 
         return output;
     }
 
+    /**
+     * Predicts the output for a sparse input, reading only the first layer's weights for its non-zero inputs.
+     */
+    public double[] predict(SparseVector x) {
+        return predictInto(x, new double[getOutputSize()]);
+    }
+
+    public double[] predictInto(SparseVector x, double[] out) {
+        double[] output = forward(null, x, workspaces.get(), instrumentation);
+        System.arraycopy(output, 0, out, 0, output.length);
+        return out;
+    }
+
+    /**
+     * Passes an input through every layer, keeping the activations in a workspace.
+     *
+     * @return The output of the last layer, owned by the workspace.
+     */
+    double[] forward(double[] x, Workspace workspace) {
+        return forward(x, null, workspace, instrumentation);
+    }
+
+    // passes either a dense or a sparse input through every layer
+    private double[] forward(double[] x, SparseVector sparseX, Workspace workspace, Instrumentation instrumentation) {
+        if (instrumentation == null) {
+            return sparseX == null ? forward(layers, x, workspace) : forward(layers, sparseX, workspace);
+        }
+        double[] output = x;
+
+        for (int i = 0; i < layers.length; i++) {
+            long start = System.nanoTime();
+            if (i == 0 && sparseX != null) {
+                output = layers[0].apply(sparseX, workspace.getOutputBeforeActivation(0), workspace.getOutput(0));
+            } else {
+                output = layers[i].apply(output, workspace.getOutputBeforeActivation(i), workspace.getOutput(i));
+            }
+            instrumentation.recordForward(i, System.nanoTime() - start);
+        }
+
+        return output;
+    }
+
+    static double[] forward(Layer[] layers, double[] x, Workspace workspace) {
+        double[] output = x;
+
+        for (int i = 0; i < layers.length; i++) {
+            output = layers[i].apply(output, workspace.getOutputBeforeActivation(i), workspace.getOutput(i));
+        }
+
+        return output;
+    }
+
+    static double[] forward(Layer[] layers, SparseVector x, Workspace workspace) {
+        double[] output = layers[0].apply(x, workspace.getOutputBeforeActivation(0), workspace.getOutput(0));
+
+        for (int i = 1; i < layers.length; i++) {
+            output = layers[i].apply(output, workspace.getOutputBeforeActivation(i), workspace.getOutput(i));
+        }
+
+        return output;
+    }
+
+    /**
+     * Predicts the outputs for a batch of inputs stored as a row-major matrix with one row per example.
+     *
+     * @return The outputs as a row-major matrix, owned by the workspace.
+     */
+    public double[] predict(double[] x, int rows, BatchWorkspace workspace) {
+        return forward(layers, x, rows, workspace, instrumentation);
+    }
+
+    static double[] forward(Layer[] layers, double[] x, int rows, BatchWorkspace workspace, Instrumentation instrumentation) {
+        if (rows > workspace.getCapacity()) {
+            throw new IllegalArgumentException(rows + " rows given but workspace has capacity for " + workspace.getCapacity());
+        }
+        double[] output = x;
+
+        for (int i = 0; i < layers.length; i++) {
+            long start = instrumentation == null ? 0 : System.nanoTime();
+            layers[i].apply(output, rows, workspace.getOutputBeforeActivation(i), workspace.getOutput(i));
+            output = workspace.getOutput(i);
+
+            if (instrumentation != null) {
+                instrumentation.recordForward(i, System.nanoTime() - start);
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Creates an immutable copy of this network for inference, unaffected by any further training.
+     */
+    public FrozenNeuralNetwork freeze() {
+        return new FrozenNeuralNetwork(layers);
+    }
+
+    /**
+     * Copies the network into weights stored off-heap, see {@link OffHeapWeightStorage}. The copy trains and predicts
+     * like this network but its weights add nothing to garbage collection. They count against
+     * {@code -XX:MaxDirectMemorySize} instead, which defaults to the maximum heap size.
+     */
+    public NeuralNetwork toOffHeap() {
+        return new NeuralNetwork(Stream.of(layers)
+                .map(layer -> new Layer(layer.getInputSize(), layer.getOutputSize(), layer.hasBias(), layer.getActivationFunction(), OffHeapWeightStorage.copyOf(layer.getWeightStorage())))
+                .toArray(Layer[]::new));
+    }
+
+    /**
+     * Converts the network to single precision.
+     */
+    public FloatNeuralNetwork toFloat() {
+        return new FloatNeuralNetwork(this);
+    }
+
+    /**
+     * Attaches counters recording where training and prediction spend their time, or detaches them if null.
+     */
+    public void setInstrumentation(Instrumentation instrumentation) {
+        if (instrumentation != null && instrumentation.getForwardNanos().length != layers.length) {
+            throw new IllegalArgumentException("Instrumentation is for a network of " + instrumentation.getForwardNanos().length + " layers");
+        }
+        this.instrumentation = instrumentation;
+    }
+
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
     public Layer[] getLayers() {
         return layers;
     }
@@ -0,0 +1,141 @@
+package com.tomallton.neuralnetwork;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import com.tomallton.neuralnetwork.util.MathUtils;
+
+/**
+ * Weights stored as little-endian doubles in a direct or memory-mapped buffer outside the heap, so even very large
+ * layers add nothing to garbage collection. A buffer holds at most 2 GB, which limits each layer to 268 million
+ * weights, but a network may be far larger in total. Storage over a read-only buffer, such as a model file mapped by
+ * {@link ModelFile#map(java.nio.file.Path)}, can be shared by any number of threads predicting at once.
+ * <p>
+ * Storage {@link #allocate(int) allocated} rather than mapped is direct memory, which the JVM limits to
+ * {@code -XX:MaxDirectMemorySize}. That defaults to the maximum heap size, so moving large layers off-heap needs the
+ * limit raised, or allocation fails with an {@link OutOfMemoryError} once the layers outgrow the heap limit.
+ */
+public class OffHeapWeightStorage implements WeightStorage {
+    // number of weights an optimizer updates at a time through a buffer on the heap
+    private static final int CHUNK_SIZE = 4096;
+    private static final ThreadLocal<double[]> CHUNKS = ThreadLocal.withInitial(() -> new double[CHUNK_SIZE]);
+
+    private final ByteBuffer buffer;
+    private final DoubleBuffer doubles;
+
+    /**
+     * Uses a buffer holding little-endian doubles from its position to its limit, without copying it.
+     */
+    public OffHeapWeightStorage(ByteBuffer buffer) {
+        if (buffer.remaining() % Double.BYTES != 0) {
+            throw new IllegalArgumentException("Buffer of " + buffer.remaining() + " bytes does not hold a whole number of doubles");
+        }
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.doubles = this.buffer.asDoubleBuffer();
+    }
+
+    /**
+     * Allocates zeroed storage for a number of weights.
+     */
+    public static OffHeapWeightStorage allocate(int size) {
+        if (size > Integer.MAX_VALUE / Double.BYTES) {
+            throw new IllegalArgumentException(size + " weights do not fit in one buffer");
+        }
+        return new OffHeapWeightStorage(ByteBuffer.allocateDirect(size * Double.BYTES));
+    }
+
+    /**
+     * Copies weights from any storage into newly allocated off-heap storage.
+     */
+    public static OffHeapWeightStorage copyOf(WeightStorage weights) {
+        OffHeapWeightStorage copy = allocate(weights.size());
+        double[] chunk = CHUNKS.get();
+
+        for (int from = 0; from < weights.size(); from += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, weights.size() - from);
+            weights.get(from, chunk, 0, length);
+            copy.set(from, chunk, 0, length);
+        }
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return doubles.capacity();
+    }
+
+    @Override
+    public double get(int index) {
+        return doubles.get(index);
+    }
+
+    @Override
+    public void set(int index, double value) {
+        doubles.put(index, value);
+    }
+
+    @Override
+    public void get(int from, double[] destination, int offset, int length) {
+        doubles.get(from, destination, offset, length);
+    }
+
+    @Override
+    public void set(int from, double[] source, int offset, int length) {
+        doubles.put(from, source, offset, length);
+    }
+
+    @Override
+    public double dot(int from, double[] x, int xOffset, int length) {
+        return MathUtils.dot(x, xOffset, buffer, from, length);
+    }
+
+    @Override
+    public double dot(int from, SparseVector x) {
+        return MathUtils.dot(x.getValues(), x.getIndices(), 0, x.getNonZeroCount(), buffer, from);
+    }
+
+    @Override
+    public void addTo(double alpha, int from, double[] y, int yOffset, int length) {
+        MathUtils.axpy(alpha, buffer, from, y, yOffset, length);
+    }
+
+    @Override
+    public void add(double alpha, double[] x, int xOffset, int from, int length) {
+        MathUtils.axpy(alpha, x, xOffset, buffer, from, length);
+    }
+
+    @Override
+    public void add(double alpha, SparseVector x, int from) {
+        MathUtils.axpy(alpha, x.getValues(), x.getIndices(), 0, x.getNonZeroCount(), buffer, from);
+    }
+
+    /**
+     * Updates the weights a chunk at a time, copying each chunk onto the heap for the optimizer and back.
+     */
+    @Override
+    public void update(Optimizer optimizer, int layer, double[] gradients, int from, int to, double learningRate, int examples) {
+        double[] chunk = CHUNKS.get();
+
+        for (int chunkFrom = from; chunkFrom < to; chunkFrom += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, to - chunkFrom);
+            doubles.get(chunkFrom, chunk, 0, length);
+            optimizer.update(layer, chunk, chunkFrom, gradients, chunkFrom, chunkFrom + length, learningRate, examples);
+            doubles.put(chunkFrom, chunk, 0, length);
+        }
+    }
+
+    @Override
+    public OffHeapWeightStorage copy() {
+        return copyOf(this);
+    }
+
+    @Override
+    public double[] array() {
+        return null;
+    }
+
+    public boolean isReadOnly() {
+        return buffer.isReadOnly();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.tomallton.neuralnetwork;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A rule for moving weights against their gradients. Stateful optimizers keep their state in arrays laid out like the
+ * weights of each layer, see {@link Layer#getWeightStorage()}, allocated on the first step. An optimizer belongs to one
+ * network and carries its state from step to step.
+ */
+public interface Optimizer {
+
+    /**
+     * Called once before the updates of each step, to allocate state and advance any step counters.
+     */
+    void beginStep(Layer[] layers);
+
+    /**
+     * Updates a range of one layer's weights in a single pass. Disjoint ranges may be updated concurrently.
+     *
+     * @param weights The weights from index {@code weightsOffset} of the layer on, which may hold only the range being
+     *            updated, so weight {@code i} is at {@code weights[i - weightsOffset]}.
+     * @param gradients The gradients of the error summed over {@code examples} examples.
+     */
+    void update(int layer, double[] weights, int weightsOffset, double[] gradients, int from, int to, double learningRate, int examples);
+
+    /**
+     * Takes one step, updating every weight of every layer.
+     */
+    default void step(Layer[] layers, Gradients gradients, double learningRate, int examples) {
+        beginStep(layers);
+        for (int layer = 0; layer < layers.length; layer++) {
+            WeightStorage weights = layers[layer].getWeightStorage();
+            weights.update(this, layer, gradients.get(layer), 0, weights.size(), learningRate, examples);
+        }
+    }
+
+    /**
+     * Writes the state carried from step to step, such as moving averages and step counts, so that training can resume
+     * from a checkpoint as if it had never stopped. Stateless optimizers write nothing.
+     */
+    default void saveState(DataOutput out) throws IOException {
+    }
+
+    /**
+     * Restores state written by {@link #saveState(DataOutput)}, replacing any the optimizer holds.
+     *
+     * @throws IOException If the state was saved for a network with differently sized layers.
+     */
+    default void loadState(DataInput in, Layer[] layers) throws IOException {
+    }
+
+    /**
+     * Writes state arrays laid out like the weights of each layer, which may not have been allocated yet.
+     */
+    static void writeState(DataOutput out, double[][] state) throws IOException {
+        out.writeBoolean(state != null);
+        if (state != null) {
+            out.writeInt(state.length);
+            for (double[] layerState : state) {
+                out.writeInt(layerState.length);
+                for (double value : layerState) {
+                    out.writeDouble(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads state arrays written by {@link #writeState(DataOutput, double[][])}, checking they are laid out like the
+     * weights of each layer.
+     */
+    static double[][] readState(DataInput in, Layer[] layers) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        if (in.readInt() != layers.length) {
+            throw new IOException("Optimizer state was saved for a network with a different number of layers");
+        }
+        double[][] state = new double[layers.length][];
+        for (int i = 0; i < layers.length; i++) {
+            if (in.readInt() != layers[i].getWeightCount()) {
+                throw new IOException("Optimizer state of layer " + i + " was saved for a different number of weights");
+            }
+            state[i] = new double[layers[i].getWeightCount()];
+            for (int j = 0; j < state[i].length; j++) {
+                state[i][j] = in.readDouble();
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Allocates state arrays laid out like the weights of each layer, or returns the existing ones.
+     */
+    static double[][] state(double[][] state, Layer[] layers) {
+        if (state == null) {
+            state = new double[layers.length][];
+            for (int i = 0; i < layers.length; i++) {
+                state[i] = new double[layers[i].getWeightCount()];
+            }
+        } else if (state.length != layers.length) {
+            throw new IllegalStateException("Optimizer was used with a network of " + state.length + " layers");
+        }
+        return state;
+    }
+}
\ No newline at end of file
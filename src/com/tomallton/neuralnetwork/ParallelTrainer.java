@@ -0,0 +1,151 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Trains a network with mini-batch gradient descent across several threads. Each batch is split into shards whose
+ * gradients are computed in parallel, then summed stripe by stripe in shard order and applied in a single update. The
+ * result depends only on the number of shards, never on thread scheduling.
+ */
+public class ParallelTrainer {
+    // number of weights summed and updated by each reduction task
+    private static final int STRIPE_SIZE = 4096;
+
+    private final NeuralNetwork network;
+    private final ExecutorService executor;
+    private final BatchWorkspace[] workspaces;
+    private final Gradients[] gradients;
+    private final Optimizer optimizer;
+
+    public ParallelTrainer(NeuralNetwork network, int batchSize) {
+        this(network, batchSize, ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool());
+    }
+
+    public ParallelTrainer(NeuralNetwork network, int batchSize, int shards, ExecutorService executor) {
+        this(network, batchSize, shards, executor, new SGD());
+    }
+
+    public ParallelTrainer(NeuralNetwork network, int batchSize, int shards, ExecutorService executor, Optimizer optimizer) {
+        if (shards < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Batch size and number of shards must be positive");
+        }
+        this.network = network;
+        this.executor = executor;
+        this.optimizer = optimizer;
+        this.workspaces = new BatchWorkspace[shards];
+        this.gradients = new Gradients[shards];
+
+        for (int shard = 0; shard < shards; shard++) {
+            workspaces[shard] = new BatchWorkspace(network, (batchSize + shards - 1) / shards);
+            gradients[shard] = new Gradients(network);
+        }
+    }
+
+    public void train(double[][] X, double[][] y, double learningRate, int epochs) {
+        for (int i = 0; i < epochs; i++) {
+            train(X, y, learningRate);
+        }
+    }
+
+    /**
+     * Trains for one epoch.
+     *
+     * @return The error of each example.
+     */
+    public double[] train(double[][] X, double[][] y, double learningRate) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("Length of arrays are not the same");
+        }
+        double[] totalErrors = new double[X.length];
+        int shardSize = workspaces[0].getCapacity();
+        int batchSize = shardSize * workspaces.length;
+
+        List<Callable<Void>> gradientTasks = new ArrayList<>();
+        List<Callable<Void>> updateTasks = new ArrayList<>();
+
+        for (int from = 0; from < X.length; from += batchSize) {
+            int rows = Math.min(batchSize, X.length - from);
+            Instrumentation instrumentation = network.getInstrumentation();
+            long start = instrumentation == null ? 0 : System.nanoTime();
+
+            gradientTasks.clear();
+            for (int shard = 0; shard * shardSize < rows; shard++) {
+                int shardFrom = from + shard * shardSize;
+                int shardRows = Math.min(shardSize, rows - shard * shardSize);
+                BatchWorkspace workspace = workspaces[shard];
+                Gradients shardGradients = gradients[shard];
+
+                gradientTasks.add(() -> {
+                    for (int row = 0; row < shardRows; row++) {
+                        System.arraycopy(X[shardFrom + row], 0, workspace.getInput(), row * network.getInputSize(), network.getInputSize());
+                        System.arraycopy(y[shardFrom + row], 0, workspace.getTarget(), row * network.getOutputSize(), network.getOutputSize());
+                    }
+
+                    shardGradients.clear();
+                    network.computeGradients(workspace.getInput(), workspace.getTarget(), shardRows, workspace, shardGradients);
+
+                    System.arraycopy(workspace.getErrors(), 0, totalErrors, shardFrom, shardRows);
+                    return null;
+                });
+            }
+            invokeAll(gradientTasks);
+
+            // sum the gradients of every shard into the first and update each stripe of weights
+            int shards = gradientTasks.size(), examples = rows;
+            optimizer.beginStep(network.getLayers());
+
+            updateTasks.clear();
+            for (int layerIndex = 0; layerIndex < network.getLayers().length; layerIndex++) {
+                WeightStorage weights = network.getLayers()[layerIndex].getWeightStorage();
+
+                for (int stripe = 0; stripe < weights.size(); stripe += STRIPE_SIZE) {
+                    int layer = layerIndex, stripeFrom = stripe, stripeTo = Math.min(stripe + STRIPE_SIZE, weights.size());
+
+                    updateTasks.add(() -> {
+                        double[] gradient = gradients[0].get(layer);
+                        for (int shard = 1; shard < shards; shard++) {
+                            double[] shardGradient = gradients[shard].get(layer);
+                            for (int i = stripeFrom; i < stripeTo; i++) {
+                                gradient[i] += shardGradient[i];
+                            }
+                        }
+                        weights.update(optimizer, layer, gradient, stripeFrom, stripeTo, learningRate, examples);
+                        return null;
+                    });
+                }
+            }
+            invokeAll(updateTasks);
+
+            // memory allocated by the worker threads isn't visible from here
+            if (instrumentation != null) {
+                instrumentation.recordGradients(gradients[0]);
+                instrumentation.recordStep(rows, System.nanoTime() - start, 0);
+            }
+        }
+
+        return totalErrors;
+    }
+
+    public NeuralNetwork getNetwork() {
+        return network;
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Training failed", exception.getCause());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,169 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.function.Function;
+
+import com.tomallton.neuralnetwork.util.MathUtils;
+
+/**
+ * An immutable copy of a trained network for inference with weights quantized to 8-bit integers. Each output neuron has
+ * its own weight scale, and the inputs to each layer are quantized with a scale calibrated on sample inputs, so dot
+ * products run on integers accumulated in 32 bits. Bias weights and activation functions stay in double precision.
+ */
+public final class QuantizedNeuralNetwork implements Function<double[], double[]> {
+    private static final int MAX_VALUE = 127;
+
+    private final QuantizedLayer[] layers;
+    private final ThreadLocal<Activations> activations = ThreadLocal.withInitial(this::newActivations);
+
+    private QuantizedNeuralNetwork(QuantizedLayer[] layers) {
+        this.layers = layers;
+    }
+
+    /**
+     * Quantizes a network, calibrating the scale of the inputs to each layer from the range of values they take when
+     * predicting a sample of inputs.
+     */
+    public static QuantizedNeuralNetwork quantize(NeuralNetwork network, double[][] calibration) {
+        Layer[] layers = network.getLayers();
+        double[] largestInputs = new double[layers.length];
+        Workspace workspace = new Workspace(network);
+
+        for (double[] x : calibration) {
+            network.forward(x, workspace);
+            for (int i = 0; i < layers.length; i++) {
+                double[] input = i == 0 ? x : workspace.getOutput(i - 1);
+                for (double value : input) {
+                    largestInputs[i] = Math.max(largestInputs[i], Math.abs(value));
+                }
+            }
+        }
+
+        QuantizedLayer[] quantizedLayers = new QuantizedLayer[layers.length];
+        for (int i = 0; i < layers.length; i++) {
+            quantizedLayers[i] = new QuantizedLayer(layers[i], largestInputs[i] == 0 ? 1 : largestInputs[i] / MAX_VALUE);
+        }
+        return new QuantizedNeuralNetwork(quantizedLayers);
+    }
+
+    @Override
+    public double[] apply(double[] x) {
+        return predict(x);
+    }
+
+    public double[][] predict(double[][] X) {
+        double[][] output = new double[X.length][];
+
+        for (int i = 0; i < X.length; i++) {
+            output[i] = predict(X[i]);
+        }
+
+        return output;
+    }
+
+    public double[] predict(double... x) {
+        return predictInto(x, new double[getOutputSize()]);
+    }
+
+    /**
+     * Predicts the output for an input, writing it into {@code out}. Allocates nothing once the calling thread has made
+     * its first prediction.
+     */
+    public double[] predictInto(double[] x, double[] out) {
+        if (x.length != getInputSize()) {
+            throw new IllegalArgumentException(x.length + " inputs given but expected " + getInputSize());
+        }
+        Activations activations = this.activations.get();
+        double[] output = x;
+
+        for (int i = 0; i < layers.length; i++) {
+            output = layers[i].apply(output, activations.inputs[i], activations.outputs[i]);
+        }
+
+        System.arraycopy(output, 0, out, 0, output.length);
+        return out;
+    }
+
+    public int getInputSize() {
+        return layers[0].inputSize;
+    }
+
+    public int getOutputSize() {
+        return layers[layers.length - 1].outputSize;
+    }
+
+    private static class QuantizedLayer {
+        private final int inputSize, outputSize;
+        private final DerivableFunction activationFunction;
+        private final double inputScale;
+
+        // row-major by output neuron without the bias weights, which are kept separately
+        private final byte[] weights;
+        private final double[] outputScales, bias;
+
+        private QuantizedLayer(Layer layer, double inputScale) {
+            this.inputSize = layer.getInputSize();
+            this.outputSize = layer.getOutputSize();
+            this.activationFunction = layer.getActivationFunction();
+            this.inputScale = inputScale;
+            this.weights = new byte[outputSize * inputSize];
+            this.outputScales = new double[outputSize];
+            this.bias = layer.hasBias() ? layer.getBias() : null;
+
+            double[] layerWeights = new double[inputSize];
+            for (int neuron = 0; neuron < outputSize; neuron++) {
+                layer.getWeightStorage().get(neuron * layer.getStride(), layerWeights, 0, inputSize);
+
+                double largestWeight = 0;
+                for (int i = 0; i < inputSize; i++) {
+                    largestWeight = Math.max(largestWeight, Math.abs(layerWeights[i]));
+                }
+                double weightScale = largestWeight == 0 ? 1 : largestWeight / MAX_VALUE;
+
+                for (int i = 0; i < inputSize; i++) {
+                    weights[neuron * inputSize + i] = quantize(layerWeights[i], weightScale);
+                }
+                // rescales the integer dot product back to the range of the original weights and inputs
+                outputScales[neuron] = weightScale * inputScale;
+            }
+        }
+
+        private double[] apply(double[] input, byte[] quantizedInput, double[] output) {
+            for (int i = 0; i < inputSize; i++) {
+                quantizedInput[i] = quantize(input[i], inputScale);
+            }
+
+            for (int neuron = 0; neuron < outputSize; neuron++) {
+                int dot = MathUtils.getKernels().dot(quantizedInput, 0, weights, neuron * inputSize, inputSize);
+                output[neuron] = dot * outputScales[neuron] + (bias == null ? 0 : bias[neuron]);
+            }
+
+            // apply activation function to output
+            return activationFunction.apply(output);
+        }
+
+        private static byte quantize(double value, double scale) {
+            return (byte) Math.max(-MAX_VALUE, Math.min(MAX_VALUE, Math.round(value / scale)));
+        }
+    }
+
+    private Activations newActivations() {
+        return new Activations(layers);
+    }
+
+    // buffers reused by each thread for its predictions, static so that a thread's buffers do not keep the network
+    // reachable
+    private static class Activations {
+        private final byte[][] inputs;
+        private final double[][] outputs;
+
+        private Activations(QuantizedLayer[] layers) {
+            inputs = new byte[layers.length][];
+            outputs = new double[layers.length][];
+
+            for (int i = 0; i < layers.length; i++) {
+                inputs[i] = new byte[layers[i].inputSize];
+                outputs[i] = new double[layers[i].outputSize];
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.tomallton.neuralnetwork;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Gradient descent dividing the step of each weight by a decaying root mean square of its recent gradients.
+ */
+public class RMSProp implements Optimizer {
+    private final double decay, epsilon;
+
+    private double[][] meanSquares;
+
+    public RMSProp() {
+        this(0.9, 1e-8);
+    }
+
+    public RMSProp(double decay, double epsilon) {
+        this.decay = decay;
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public void beginStep(Layer[] layers) {
+        meanSquares = Optimizer.state(meanSquares, layers);
+    }
+
+    @Override
+    public void update(int layer, double[] weights, int weightsOffset, double[] gradients, int from, int to, double learningRate, int examples) {
+        double[] meanSquare = meanSquares[layer];
+
+        for (int i = from; i < to; i++) {
+            double gradient = gradients[i] / examples;
+            meanSquare[i] = decay * meanSquare[i] + (1 - decay) * gradient * gradient;
+            weights[i - weightsOffset] -= learningRate * gradient / (Math.sqrt(meanSquare[i]) + epsilon);
+        }
+    }
+
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        Optimizer.writeState(out, meanSquares);
+    }
+
+    @Override
+    public void loadState(DataInput in, Layer[] layers) throws IOException {
+        meanSquares = Optimizer.readState(in, layers);
+    }
+
+    @Override
+    public String toString() {
+        return "RMSProp{decay=" + decay + ", epsilon=" + epsilon + "}";
+    }
+}
\ No newline at end of file
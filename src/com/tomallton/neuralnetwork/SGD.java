@@ -0,0 +1,25 @@
+package com.tomallton.neuralnetwork;
+
+/**
+ * Plain stochastic gradient descent, moving each weight by the learning rate times its mean gradient. Has no state, so
+ * one instance can be shared between networks.
+ */
+public class SGD implements Optimizer {
+
+    @Override
+    public void beginStep(Layer[] layers) {
+    }
+
+    @Override
+    public void update(int layer, double[] weights, int weightsOffset, double[] gradients, int from, int to, double learningRate, int examples) {
+        double rate = learningRate / examples;
+        for (int i = from; i < to; i++) {
+            weights[i - weightsOffset] -= rate * gradients[i];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SGD";
+    }
+}
\ No newline at end of file
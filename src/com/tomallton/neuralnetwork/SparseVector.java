@@ -0,0 +1,88 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.Arrays;
+
+/**
+ * An input vector stored as the indices and values of its non-zero elements, in ascending order of index. Networks
+ * given sparse inputs only touch the first layer's weights for the non-zero inputs, so the cost of the first layer
+ * scales with the number of non-zero inputs rather than the input width.
+ */
+public final class SparseVector {
+    private final int size;
+    private final int[] indices;
+    private final double[] values;
+
+    /**
+     * @param size The number of elements, zero or not.
+     * @param indices The indices of the non-zero elements in ascending order, not copied.
+     * @param values The values of the non-zero elements, not copied.
+     */
+    public SparseVector(int size, int[] indices, double[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException(indices.length + " indices given for " + values.length + " values");
+        }
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] < 0 || indices[i] >= size || (i > 0 && indices[i] <= indices[i - 1])) {
+                throw new IllegalArgumentException("Indices must be ascending and between 0 and " + (size - 1));
+            }
+        }
+        this.size = size;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Creates a sparse vector from the non-zero elements of a dense one.
+     */
+    public static SparseVector of(double... x) {
+        int nonZeros = 0;
+        for (double value : x) {
+            nonZeros += value != 0 ? 1 : 0;
+        }
+
+        int[] indices = new int[nonZeros];
+        double[] values = new double[nonZeros];
+        for (int i = 0, j = 0; i < x.length; i++) {
+            if (x[i] != 0) {
+                indices[j] = i;
+                values[j++] = x[i];
+            }
+        }
+        return new SparseVector(x.length, indices, values);
+    }
+
+    public double[] toDense() {
+        double[] x = new double[size];
+        for (int i = 0; i < indices.length; i++) {
+            x[indices[i]] = values[i];
+        }
+        return x;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getNonZeroCount() {
+        return indices.length;
+    }
+
+    /**
+     * Gets the indices of the non-zero elements, which must not be modified.
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * Gets the values of the non-zero elements, which must not be modified.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector{size=" + size + ", indices=" + Arrays.toString(indices) + ", values=" + Arrays.toString(values) + "}";
+    }
+}
\ No newline at end of file
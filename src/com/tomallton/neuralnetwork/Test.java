@@ -1,36 +1,79 @@
 package com.tomallton.neuralnetwork;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.tomallton.neuralnetwork.data.Batch;
+import com.tomallton.neuralnetwork.data.CachedDataset;
+import com.tomallton.neuralnetwork.data.CsvReader;
+import com.tomallton.neuralnetwork.data.DatasetCache;
+import com.tomallton.neuralnetwork.data.DatasetView;
+import com.tomallton.neuralnetwork.data.StandardScaler;
+import com.tomallton.neuralnetwork.serving.InferenceHttpEndpoint;
+import com.tomallton.neuralnetwork.serving.InferenceServer;
+import com.tomallton.neuralnetwork.serving.ScoringPipeline;
 import com.tomallton.neuralnetwork.util.FileUtils;
+import com.tomallton.neuralnetwork.util.Kernels;
 import com.tomallton.neuralnetwork.util.MathUtils;
 import com.tomallton.neuralnetwork.util.Pair;
 import com.tomallton.neuralnetwork.util.StringUtils;
 
 public class Test {
 
-    public static void main(String[] args) {
-        cancerClassificationTest();
+    /**
+     * Runs the tests named in the arguments, or the cancer classification test if none are.
+     */
+    public static void main(String[] args) throws ReflectiveOperationException {
+        if (args.length == 0) {
+            cancerClassificationTest();
+        }
+        for (String test : args) {
+            Test.class.getMethod(test).invoke(null);
+        }
     }
 
     public static void cancerClassificationTest() {
-        List<String> lines = FileUtils.readFile("data/cancer.csv");
-
-        double[][] X = new double[lines.size()][];
-        double[][] y = new double[lines.size()][1];
-
-        for (int i = 0; i < lines.size(); i++) {
-            String[] fields = lines.get(i).split(",");
-
-            // skip id and classification field
-            X[i] = Arrays.stream(Arrays.copyOfRange(fields, 2, fields.length)).mapToDouble(Double::valueOf).toArray();
-            // label as 1 if positive for cancer (malignant)
-            y[i] = new double[] { fields[1].equals("M") ? 1 : 0 };
-        }
-
-        // normalize data
-        MathUtils.normalize(X);
+        Pair<double[][], double[][]> data = loadCancerData();
+        double[][] X = data.getLeft();
+        double[][] y = data.getRight();
 
         NeuralNetwork model = new NeuralNetwork(new Layer(X[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
 
@@ -53,6 +96,66 @@ public class Test {
         System.out.println("Accuracy: " + StringUtils.formatPercentage(accuracy));
     }
 
+    public static void hogwildCancerClassificationTest() {
+        Pair<double[][], double[][]> data = loadCancerData();
+        Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> trainTestSplit = MathUtils.trainTestSplit(data.getLeft(), data.getRight());
+
+        NeuralNetwork model = new NeuralNetwork(new Layer(data.getLeft()[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        HogwildTrainer trainer = new HogwildTrainer(model, 4, pool);
+        for (int epoch = 1; epoch <= 100; epoch++) {
+            double error = MathUtils.sum(trainer.train(trainTestSplit.getLeft().getLeft(), trainTestSplit.getLeft().getRight(), 0.1));
+            if (epoch % 25 == 0) {
+                System.out.println("Epoch " + epoch + " error: " + error);
+            }
+        }
+        pool.shutdown();
+
+        double[][] yPredict = model.predict(trainTestSplit.getRight().getLeft());
+        MathUtils.apply(yPredict, a -> a >= 0.5 ? 1D : 0D);
+
+        System.out.println("Hogwild accuracy: " + StringUtils.formatPercentage(MathUtils.accuracy(yPredict, trainTestSplit.getRight().getRight())));
+    }
+
+    public static void floatCancerClassificationTest() {
+        Pair<double[][], double[][]> data = loadCancerData();
+        Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> trainTestSplit = MathUtils.trainTestSplit(data.getLeft(), data.getRight());
+
+        NeuralNetwork model = new NeuralNetwork(new Layer(data.getLeft()[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+        // start from the same weights
+        FloatNeuralNetwork floatModel = model.toFloat();
+
+        float[][] xTrain = Arrays.stream(trainTestSplit.getLeft().getLeft()).map(MathUtils::toFloat).toArray(float[][]::new);
+        float[][] yTrain = Arrays.stream(trainTestSplit.getLeft().getRight()).map(MathUtils::toFloat).toArray(float[][]::new);
+
+        model.train(trainTestSplit.getLeft().getLeft(), trainTestSplit.getLeft().getRight(), 0.1, 100);
+        floatModel.train(xTrain, yTrain, 0.1f, 100);
+
+        double[][] yPredict = MathUtils.apply(model.predict(trainTestSplit.getRight().getLeft()), a -> a >= 0.5 ? 1D : 0D);
+        double[][] yPredictFloat = MathUtils.apply(floatModel.predict(trainTestSplit.getRight().getLeft()), a -> a >= 0.5 ? 1D : 0D);
+
+        System.out.println("Accuracy: double " + StringUtils.formatPercentage(MathUtils.accuracy(yPredict, trainTestSplit.getRight().getRight())) + ", float "
+                + StringUtils.formatPercentage(MathUtils.accuracy(yPredictFloat, trainTestSplit.getRight().getRight())));
+    }
+
+    public static void quantizedCancerClassificationTest() {
+        Pair<double[][], double[][]> data = loadCancerData();
+        Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> trainTestSplit = MathUtils.trainTestSplit(data.getLeft(), data.getRight());
+
+        NeuralNetwork model = new NeuralNetwork(new Layer(data.getLeft()[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+        model.train(trainTestSplit.getLeft().getLeft(), trainTestSplit.getLeft().getRight(), 0.1, 100);
+
+        // calibrate on the training inputs
+        QuantizedNeuralNetwork quantized = QuantizedNeuralNetwork.quantize(model, trainTestSplit.getLeft().getLeft());
+
+        double[][] yPredict = MathUtils.apply(model.predict(trainTestSplit.getRight().getLeft()), a -> a >= 0.5 ? 1D : 0D);
+        double[][] yPredictQuantized = MathUtils.apply(quantized.predict(trainTestSplit.getRight().getLeft()), a -> a >= 0.5 ? 1D : 0D);
+
+        System.out.println("Accuracy: double " + StringUtils.formatPercentage(MathUtils.accuracy(yPredict, trainTestSplit.getRight().getRight())) + ", int8 "
+                + StringUtils.formatPercentage(MathUtils.accuracy(yPredictQuantized, trainTestSplit.getRight().getRight())));
+    }
+
     public static void calculationsTest() {
 
         // https://mattmazur.com/2015/03/17/a-step-by-step-backpropagation-example/
@@ -63,4 +166,782 @@ public class Test {
 
         System.out.println(model);
     }
+
+    public static void miniBatchTest() {
+        // a batch of one example takes the same step as per-example training
+        NeuralNetwork model = new NeuralNetwork(new Layer(new double[][] { { 0.15, 0.25 }, { 0.2, 0.3 }, { 0.35, 0.35 } }, ActivationFunction.SIGMOID),
+                new Layer(new double[][] { { 0.4, 0.5 }, { 0.45, 0.55 }, { 0.6, 0.6 } }, ActivationFunction.SIGMOID));
+
+        model.trainBatches(new double[][] { { 0.05, 0.1 } }, new double[][] { { 0.01, 0.99 } }, 0.5, 1);
+
+        System.out.println(model);
+    }
+
+    public static void parallelTrainingTest() {
+        // same shard count on differently sized pools must give identical weights
+        double[][] X = new double[1000][];
+        double[][] y = new double[X.length][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(10, Math::random);
+            y[i] = new double[] { MathUtils.sum(X[i]) > 5 ? 1 : 0 };
+        }
+
+        NeuralNetwork first = new NeuralNetwork(new Layer(10, ActivationFunction.SIGMOID), new Layer(5, ActivationFunction.SIGMOID), new Layer(1));
+        NeuralNetwork second = new NeuralNetwork(Arrays.stream(first.getLayers()).map(Layer::new).toArray(Layer[]::new));
+
+        ForkJoinPool singleThread = new ForkJoinPool(1), manyThreads = new ForkJoinPool(4);
+        new ParallelTrainer(first, 32, 4, singleThread).train(X, y, 0.1, 5);
+        new ParallelTrainer(second, 32, 4, manyThreads).train(X, y, 0.1, 5);
+        singleThread.shutdown();
+        manyThreads.shutdown();
+
+        System.out.println("Parallel training deterministic: " + first.toString().equals(second.toString()));
+    }
+
+    public static void optimizersTest() {
+        Pair<double[][], double[][]> data = loadCancerData();
+        Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> trainTestSplit = MathUtils.trainTestSplit(data.getLeft(), data.getRight());
+        double[][] XTrain = trainTestSplit.getLeft().getLeft(), yTrain = trainTestSplit.getLeft().getRight();
+
+        Optimizer[] optimizers = { new SGD(), new Momentum(), new RMSProp(), new Adam() };
+        double[] learningRates = { 0.5, 0.1, 0.005, 0.01 };
+
+        for (int i = 0; i < optimizers.length; i++) {
+            NeuralNetwork model = new NeuralNetwork(new Layer(XTrain[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+            model.train(XTrain, yTrain, learningRates[i], 20, 32, optimizers[i]);
+
+            double[][] yPredict = MathUtils.apply(model.predict(trainTestSplit.getRight().getLeft()), a -> a >= 0.5 ? 1D : 0D);
+            System.out.println(optimizers[i] + " accuracy after 20 epochs: " + StringUtils.formatPercentage(MathUtils.accuracy(yPredict, trainTestSplit.getRight().getRight())));
+        }
+    }
+
+    public static void gridSearchTest() throws InterruptedException {
+        Pair<double[][], double[][]> data = loadCancerData();
+        DatasetView view = DatasetView.of(data.getLeft(), data.getRight());
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        GridSearch search = new GridSearch(new int[][] { { 15 }, { 5, 5 } }, new DerivableFunction[] { ActivationFunction.SIGMOID, ActivationFunction.TANH },
+                new double[] { 0.5, 0.05, 0.0005 }, new int[] { 20 }, pool);
+        search.setFolds(5, true);
+        search.setSeed(1);
+
+        List<GridSearch.Result> results = search.search(view);
+        results.forEach(System.out::println);
+        System.out.println("Configurations pruned: " + results.stream().filter(GridSearch.Result::isPruned).count() + " of " + results.size());
+
+        // cancelling must stop the tasks rather than let them run to the end
+        CompletableFuture<List<GridSearch.Result>> running = search.start(view);
+        running.cancel(false);
+        System.out.println("Cancelled search stopped: " + (pool.awaitQuiescence(10, TimeUnit.SECONDS) && running.isCancelled()));
+        pool.shutdown();
+    }
+
+    public static void earlyStoppingTest() throws IOException {
+        Pair<double[][], double[][]> data = loadCancerData();
+        Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> split = MathUtils.trainTestSplit(data.getLeft(), data.getRight());
+        double[][] XTrain = split.getLeft().getLeft(), yTrain = split.getLeft().getRight();
+        double[][] XValidation = split.getRight().getLeft(), yValidation = split.getRight().getRight();
+
+        // SGD has no state, while Adam's moments and step count must be restored from the checkpoint
+        List<Supplier<Optimizer>> optimizers = List.of(SGD::new, Adam::new);
+        double[] learningRates = { 0.5, 0.01 };
+        for (int i = 0; i < optimizers.size(); i++) {
+            Supplier<Optimizer> optimizer = optimizers.get(i);
+            NeuralNetwork model = new NeuralNetwork(new Layer(XTrain[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+            NeuralNetwork interrupted = new NeuralNetwork(Arrays.stream(model.getLayers()).map(Layer::new).toArray(Layer[]::new));
+            NeuralNetwork resumed = new NeuralNetwork(Arrays.stream(model.getLayers()).map(Layer::new).toArray(Layer[]::new));
+
+            TrainingLoop loop = new TrainingLoop(model, learningRates[i], 32, optimizer.get());
+            loop.setEarlyStopping(2, 5, 1e-4);
+            System.out.println("Early stopping with " + optimizer.get() + ": " + loop.train(XTrain, yTrain, XValidation, yValidation, 1000));
+
+            // a job killed after 10 epochs then restarted must end with the same weights as one never interrupted
+            Path directory = Files.createTempDirectory("checkpoints");
+            try {
+                TrainingLoop first = new TrainingLoop(interrupted, learningRates[i], 32, optimizer.get());
+                first.setEarlyStopping(2, 5, 1e-4);
+                first.setCheckpoints(directory, 5);
+                first.train(XTrain, yTrain, XValidation, yValidation, 10);
+
+                TrainingLoop second = new TrainingLoop(resumed, learningRates[i], 32, optimizer.get());
+                second.setEarlyStopping(2, 5, 1e-4);
+                second.setCheckpoints(directory, 5);
+                TrainingLoop.Result result = second.train(XTrain, yTrain, XValidation, yValidation, 1000);
+
+                // SIMD activation functions may round differently once compiled, so weights are compared within rounding
+                double difference = 0;
+                for (int layer = 0; layer < model.getLayers().length; layer++) {
+                    difference = Math.max(difference, maxDifference(resumed.getLayers()[layer].getWeightData(), model.getLayers()[layer].getWeightData()));
+                }
+                System.out.println("Resumed: " + result + ", largest weight difference from uninterrupted: " + difference);
+            } finally {
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        Files.delete(file);
+                    }
+                }
+                Files.delete(directory);
+            }
+        }
+    }
+
+    public static void instrumentationTest() throws IOException, JMException {
+        Pair<double[][], double[][]> data = loadCancerData();
+        NeuralNetwork model = new NeuralNetwork(new Layer(data.getLeft()[0].length, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+
+        Instrumentation instrumentation = new Instrumentation(model);
+        AtomicInteger epochs = new AtomicInteger();
+        instrumentation.addListener(new TrainingListener() {
+            @Override
+            public void onEpoch(int epoch, double loss, double validationLoss) {
+                epochs.incrementAndGet();
+            }
+        });
+        instrumentation.setGradientNormInterval(10);
+        model.setInstrumentation(instrumentation);
+
+        new TrainingLoop(model, 0.5, 32).train(data.getLeft(), data.getRight(), 0.25, 20);
+        System.out.println("Epochs seen by listener: " + epochs + ", " + instrumentation);
+
+        // a per-example step records the same gradient norms as a mini-batch step of that one example
+        Supplier<NeuralNetwork> network = () -> new NeuralNetwork(1, WeightInitializer.XAVIER, new Layer(4, ActivationFunction.SIGMOID), new Layer(3, ActivationFunction.SIGMOID), new Layer(1));
+        NeuralNetwork perExample = network.get(), miniBatch = network.get();
+        perExample.setInstrumentation(new Instrumentation(perExample));
+        miniBatch.setInstrumentation(new Instrumentation(miniBatch));
+        perExample.getInstrumentation().setGradientNormInterval(1);
+        miniBatch.getInstrumentation().setGradientNormInterval(1);
+
+        double[][] X = { { 0.1, -0.4, 0.3, 0.9 } }, y = { { 1 } };
+        perExample.train(X, y, 0.1);
+        miniBatch.trainBatches(X, y, 0.1, 1);
+        System.out.println("Per-example gradient norms " + Arrays.toString(perExample.getInstrumentation().getGradientNorms()) + ", largest difference from mini-batch: "
+                + maxDifference(perExample.getInstrumentation().getGradientNorms(), miniBatch.getInstrumentation().getGradientNorms()));
+
+        ObjectName name = instrumentation.register("instrumentationTest");
+        try {
+            System.out.println("Examples over JMX: " + ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Examples"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    public static void initializationTest() throws InterruptedException, ExecutionException {
+        Supplier<NeuralNetwork> network = () -> new NeuralNetwork(42, WeightInitializer.HE, new Layer(1024, ActivationFunction.RELU), new Layer(512, ActivationFunction.RELU), new Layer(1));
+        NeuralNetwork first = network.get(), second = network.get();
+
+        // a single thread must fill large layers with the same weights as the common pool
+        ForkJoinPool pool = new ForkJoinPool(1);
+        NeuralNetwork singleThreaded = pool.submit(network::get).get();
+        pool.shutdown();
+
+        boolean same = true;
+        for (int i = 0; i < first.getLayers().length; i++) {
+            same &= Arrays.equals(first.getLayers()[i].getWeightData(), second.getLayers()[i].getWeightData());
+            same &= Arrays.equals(first.getLayers()[i].getWeightData(), singleThreaded.getLayers()[i].getWeightData());
+        }
+        System.out.println("Seeded initialization is reproducible: " + same);
+
+        for (WeightInitializer initializer : WeightInitializer.values()) {
+            Layer layer = new NeuralNetwork(42, initializer, new Layer(1024), new Layer(256), new Layer(1)).getLayers()[0];
+            double[] data = layer.getWeightData();
+            // every weight but the biases
+            double[] values = IntStream.range(0, data.length).filter(i -> i % layer.getStride() < layer.getInputSize()).mapToDouble(i -> data[i]).toArray();
+            double mean = DoubleStream.of(values).average().getAsDouble();
+            double deviation = Math.sqrt(DoubleStream.of(values).map(value -> (value - mean) * (value - mean)).average().getAsDouble());
+            System.out.println(String.format("%s: mean %.4f, standard deviation %.4f", initializer, mean, deviation));
+        }
+    }
+
+    public static void partialWeightsTest() {
+        // the second input's weights are left for the network to initialize
+        Layer layer = new Layer(new double[][] { { 0.1, 0.2 }, null, { 0.3, 0.4 } }, ActivationFunction.SIGMOID);
+        new NeuralNetwork(1, layer, new Layer(2));
+
+        double[] data = layer.getWeightData();
+        boolean kept = data[0] == 0.1 && data[2] == 0.3 && data[3] == 0.2 && data[5] == 0.4;
+        System.out.println("Pre-defined weights kept: " + kept + ", missing weights initialized: " + (data[1] != 0 && data[4] != 0));
+    }
+
+    public static void modelFileTest() throws IOException {
+        NeuralNetwork model = new NeuralNetwork(new Layer(30, ActivationFunction.SIGMOID), new Layer(15, false, ActivationFunction.TANH), new Layer(1));
+
+        double[][] X = new double[100][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(model.getInputSize(), Math::random);
+        }
+
+        Path path = Files.createTempFile("model", ".nnet");
+        try {
+            ModelFile.save(model, path);
+            NeuralNetwork loaded = ModelFile.load(path);
+
+            boolean same = true;
+            for (double[] x : X) {
+                same &= MathUtils.equals(model.predict(x), loaded.predict(x));
+            }
+            System.out.println("Saved model predicts the same: " + same + ", " + Files.size(path) + " bytes");
+
+            FloatNeuralNetwork floatModel = model.toFloat();
+            ModelFile.save(floatModel, path);
+            FloatNeuralNetwork loadedFloat = ModelFile.loadFloat(path);
+
+            same = true;
+            for (double[] x : X) {
+                float[] floatX = MathUtils.toFloat(x);
+                same &= Arrays.equals(floatModel.predict(floatX), loadedFloat.predict(floatX));
+            }
+            System.out.println("Saved float model predicts the same: " + same + ", " + Files.size(path) + " bytes");
+
+            // saving replaces the file rather than rewriting it, so a model mapped from it is left intact
+            ModelFile.save(model, path);
+            FrozenNeuralNetwork mapped = ModelFile.map(path);
+            ModelFile.save(new NeuralNetwork(new Layer(30, ActivationFunction.SIGMOID), new Layer(15, false, ActivationFunction.TANH), new Layer(1)), path);
+            same = true;
+            for (double[] x : X) {
+                same &= MathUtils.equals(model.predict(x), mapped.predict(x));
+            }
+            System.out.println("Mapped model predicts the same after saving over it: " + same);
+
+            // corrupt layer headers fail with an IOException rather than an unchecked exception
+            byte[] file = Files.readAllBytes(path);
+            // the top bytes of the first layer's input and output sizes, making them negative, and its activation function
+            int[][] corruptions = { { 27, 0x80 }, { 31, 0x80 }, { 33, 0x7F } };
+            for (int[] corruption : corruptions) {
+                byte[] corrupt = file.clone();
+                corrupt[corruption[0]] = (byte) corruption[1];
+                Files.write(path, corrupt);
+                try {
+                    ModelFile.load(path);
+                    System.out.println("Corrupt layer header at byte " + corruption[0] + " loaded");
+                } catch (IOException e) {
+                    System.out.println("Corrupt layer header at byte " + corruption[0] + ": " + e.getMessage().replace(path.toString(), "file"));
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    public static void offHeapTest() throws IOException {
+        Pair<double[][], double[][]> data = loadCancerData();
+        double[][] X = data.getLeft(), y = data.getRight();
+
+        NeuralNetwork model = new NeuralNetwork(new Layer(30, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+        NeuralNetwork offHeap = model.toOffHeap();
+
+        // the same updates in the same order, so the weights must stay identical
+        model.train(X, y, 0.05, 5);
+        offHeap.train(X, y, 0.05, 5);
+        model.train(X, y, 0.05, 5, 32, new Adam());
+        offHeap.train(X, y, 0.05, 5, 32, new Adam());
+
+        boolean same = true;
+        for (int i = 0; i < model.getLayers().length; i++) {
+            same &= Arrays.equals(model.getLayers()[i].getWeightData(), model.getLayers()[i].getWeightStorage().toArray());
+            same &= Arrays.equals(model.getLayers()[i].getWeightData(), offHeap.getLayers()[i].getWeightStorage().toArray());
+        }
+        System.out.println("Off-heap training gives the same weights: " + same);
+
+        // sparse passes over heap weights may be vectorized, so they agree with off-heap ones within rounding
+        NeuralNetwork sparseModel = new NeuralNetwork(Arrays.stream(model.getLayers()).map(Layer::new).toArray(Layer[]::new)), sparseOffHeap = sparseModel.toOffHeap();
+        SparseVector[] sparseX = Stream.of(X).map(SparseVector::of).toArray(SparseVector[]::new);
+        sparseModel.train(sparseX, y, 0.05, 2);
+        sparseOffHeap.train(sparseX, y, 0.05, 2);
+        double difference = 0;
+        for (int i = 0; i < sparseModel.getLayers().length; i++) {
+            difference = Math.max(difference, maxDifference(sparseModel.getLayers()[i].getWeightData(), sparseOffHeap.getLayers()[i].getWeightStorage().toArray()));
+        }
+        System.out.println("Off-heap sparse training largest weight difference: " + difference);
+
+        Path path = Files.createTempFile("model", ".nnet");
+        try {
+            ModelFile.save(offHeap, path);
+            FrozenNeuralNetwork frozen = model.freeze(), mapped = ModelFile.map(path);
+
+            same = true;
+            for (double[] x : X) {
+                same &= MathUtils.equals(frozen.predict(x), offHeap.predict(x)) && MathUtils.equals(frozen.predict(x), mapped.predict(x));
+            }
+            System.out.println("Off-heap and mapped models predict the same: " + same);
+
+            // flipping a bit of the last weight is only noticed when the checksum is verified
+            byte[] file = Files.readAllBytes(path);
+            file[file.length - 1] ^= 1;
+            Files.write(path, file);
+            ModelFile.map(path);
+            try {
+                ModelFile.map(path, true);
+                System.out.println("Mapped a corrupt model with its checksum verified");
+            } catch (IOException e) {
+                System.out.println("Corrupt model mapped without verifying, rejected when verifying: " + e.getMessage().endsWith("the file is corrupt"));
+            }
+
+            try {
+                ModelFile.save(model.toFloat(), path);
+                ModelFile.map(path);
+                System.out.println("Mapped a single-precision model");
+            } catch (IOException e) {
+                System.out.println("Single-precision model not mapped: " + e.getMessage().endsWith("cannot be mapped"));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    public static void csvReaderTest() throws IOException {
+        // parsed values must match Double.valueOf on every field
+        List<String> lines = FileUtils.readFile("data/cancer.csv");
+        int mismatches = 0, row = 0;
+
+        try (CsvReader reader = new CsvReader(FileChannel.open(Paths.get("data/cancer.csv")), IntStream.range(2, 32).toArray(), new int[] { 0 })) {
+            Batch batch = reader.newBatch(100);
+
+            while (reader.read(batch)) {
+                for (int i = 0; i < batch.getRows(); i++, row++) {
+                    String[] fields = lines.get(row).split(",");
+                    for (int j = 2; j < fields.length; j++) {
+                        mismatches += Double.valueOf(fields[j]) == batch.getFeatures()[i * batch.getFeatureCount() + j - 2] ? 0 : 1;
+                    }
+                    mismatches += Double.valueOf(fields[0]) == batch.getLabels()[i] ? 0 : 1;
+                }
+            }
+        }
+
+        System.out.println("CsvReader rows: " + row + " of " + lines.size() + ", mismatched values: " + mismatches);
+    }
+
+    public static void datasetCacheTest() throws IOException {
+        Path directory = Files.createTempDirectory("dataset");
+        Path cache = directory.resolve("cancer.nnds");
+        try {
+            CachedDataset dataset = DatasetCache.open(Paths.get("data/cancer.csv"), cache, channel -> new CsvReader(channel, IntStream.range(2, 32).toArray(), 1, Map.of("M", 1D, "B", 0D)));
+            long created = Files.getLastModifiedTime(cache).toMillis();
+
+            // a second open must reuse the cache
+            DatasetCache.open(Paths.get("data/cancer.csv"), cache, channel -> {
+                throw new IllegalStateException("Cache was rebuilt");
+            });
+
+            List<String> lines = FileUtils.readFile("data/cancer.csv");
+            Batch batch = dataset.newBatch(64);
+            int mismatches = 0;
+
+            for (int row = 0; dataset.read(row, batch); row += batch.getRows()) {
+                for (int i = 0; i < batch.getRows(); i++) {
+                    String[] fields = lines.get(row + i).split(",");
+                    for (int j = 2; j < fields.length; j++) {
+                        mismatches += Double.valueOf(fields[j]) == batch.getFeatures()[i * batch.getFeatureCount() + j - 2] ? 0 : 1;
+                    }
+                    mismatches += batch.getLabels()[i] == (fields[1].equals("M") ? 1 : 0) ? 0 : 1;
+                }
+            }
+
+            System.out.println("Cached rows: " + dataset.getRows() + ", mismatched values: " + mismatches + ", reused: " + (Files.getLastModifiedTime(cache).toMillis() == created));
+        } finally {
+            Files.deleteIfExists(cache);
+            Files.delete(directory);
+        }
+    }
+
+    public static void datasetViewTest() {
+        Pair<double[][], double[][]> data = loadCancerData();
+        DatasetView view = DatasetView.of(data.getLeft(), data.getRight());
+        double malignant = IntStream.of(view.getClasses()).average().getAsDouble();
+
+        // every example must land in exactly one part of each split
+        DatasetView[] split = view.shuffled(1).split(0.6, 0.2, 0.2), stratified = view.stratifiedSplit(1, 0.6, 0.2, 0.2);
+        System.out.println("Split sizes: " + split[0].size() + ", " + split[1].size() + ", " + split[2].size() + ", partitioned: " + partitions(view.size(), split));
+
+        StringBuilder proportions = new StringBuilder();
+        for (DatasetView part : stratified) {
+            proportions.append(StringUtils.formatPercentage(IntStream.of(part.getClasses()).average().getAsDouble())).append(" ");
+        }
+        System.out.println("Malignant overall " + StringUtils.formatPercentage(malignant) + ", in stratified parts " + proportions.toString().trim() + ", partitioned: "
+                + partitions(view.size(), stratified));
+
+        List<Pair<DatasetView, DatasetView>> folds = view.stratifiedKFold(5, 1);
+        boolean complementary = true;
+        for (Pair<DatasetView, DatasetView> fold : folds) {
+            complementary &= partitions(view.size(), fold.getLeft(), fold.getRight());
+        }
+        System.out.println("Stratified folds partitioned: " + partitions(view.size(), folds.stream().map(Pair::getRight).toArray(DatasetView[]::new)) + ", complementary: " + complementary);
+
+        System.out.println("Seeded shuffle is reproducible: " + IntStream.range(0, view.size()).allMatch(i -> view.shuffled(7).getRow(i) == view.shuffled(7).getRow(i)));
+
+        NeuralNetwork model = new NeuralNetwork(1, new Layer(30, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+        model.train(stratified[0], 0.5, 100, 16, new SGD(), 1);
+        Pair<double[][], double[][]> test = stratified[2].toArrays();
+        double[][] yPredict = MathUtils.apply(model.predict(test.getLeft()), a -> a >= 0.5 ? 1D : 0D);
+        System.out.println("Accuracy with a shuffle every epoch: " + StringUtils.formatPercentage(MathUtils.accuracy(yPredict, test.getRight())));
+    }
+
+    private static boolean partitions(int size, DatasetView... views) {
+        int[] counts = new int[size];
+        for (DatasetView view : views) {
+            for (int i = 0; i < view.size(); i++) {
+                counts[view.getRow(i)]++;
+            }
+        }
+        return IntStream.of(counts).allMatch(count -> count == 1);
+    }
+
+    public static void standardScalerTest() {
+        double[][] X = loadCancerData().getLeft();
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.add(MathUtils.generate(X[i].length, Math::random), X[i]);
+        }
+
+        // fitting in two halves and merging must agree with a single fit and the two-pass statistics
+        StandardScaler whole = new StandardScaler(X[0].length).fit(X);
+        StandardScaler first = new StandardScaler(X[0].length).fit(Arrays.copyOfRange(X, 0, 200));
+        StandardScaler second = new StandardScaler(X[0].length);
+        for (int i = 200; i < X.length; i++) {
+            second.fit(X[i], 1);
+        }
+        // scaling before merging must not leave the scales of the first half behind
+        first.transform(X[0].clone());
+        first.merge(second);
+
+        double[] mean = MathUtils.mean(X), standardDeviation = MathUtils.standardDeviation(X);
+        double difference = 0;
+        for (int i = 0; i < mean.length; i++) {
+            difference = Math.max(difference, Math.abs(whole.getMean()[i] - mean[i]) + Math.abs(whole.getStandardDeviation()[i] - standardDeviation[i]));
+            difference = Math.max(difference, Math.abs(first.getMean()[i] - mean[i]) + Math.abs(first.getStandardDeviation()[i] - standardDeviation[i]));
+        }
+
+        System.out.println("Largest difference from two-pass statistics: " + difference);
+
+        double[] scaled = first.transform(X[0].clone());
+        difference = 0;
+        for (int i = 0; i < mean.length; i++) {
+            difference = Math.max(difference, Math.abs(scaled[i] - (X[0][i] - mean[i]) / standardDeviation[i]));
+        }
+        System.out.println("Largest difference of scaled features: " + difference);
+    }
+
+    public static void sparseInputTest() {
+        SplittableRandom random = new SplittableRandom(1);
+        int inputSize = 1000, examples = 200;
+
+        // 1 % of inputs non-zero
+        SparseVector[] sparseX = new SparseVector[examples];
+        double[][] X = new double[examples][], y = new double[examples][];
+        for (int i = 0; i < examples; i++) {
+            X[i] = new double[inputSize];
+            for (int j = 0; j < inputSize / 100; j++) {
+                X[i][random.nextInt(inputSize)] = random.nextDouble();
+            }
+            sparseX[i] = SparseVector.of(X[i]);
+            y[i] = new double[] { X[i][0] + X[i][1] > 0 ? 1 : 0 };
+        }
+
+        NeuralNetwork dense = new NeuralNetwork(1, WeightInitializer.XAVIER, new Layer(inputSize, ActivationFunction.SIGMOID), new Layer(16, ActivationFunction.SIGMOID), new Layer(1));
+        NeuralNetwork sparse = new NeuralNetwork(1, WeightInitializer.XAVIER, new Layer(inputSize, ActivationFunction.SIGMOID), new Layer(16, ActivationFunction.SIGMOID), new Layer(1));
+
+        double difference = 0;
+        for (int i = 0; i < examples; i++) {
+            difference = Math.max(difference, maxDifference(dense.predict(X[i]), sparse.predict(sparseX[i])));
+            difference = Math.max(difference, maxDifference(dense.predict(X[i]), sparse.freeze().predict(sparseX[i])));
+        }
+        System.out.println("Sparse prediction largest difference from dense: " + difference);
+
+        dense.train(X, y, 0.1, 5);
+        sparse.train(sparseX, y, 0.1, 5);
+
+        difference = 0;
+        for (int i = 0; i < dense.getLayers().length; i++) {
+            difference = Math.max(difference, maxDifference(dense.getLayers()[i].getWeightData(), sparse.getLayers()[i].getWeightData()));
+        }
+        System.out.println("Sparse training largest weight difference from dense: " + difference);
+    }
+
+    public static void kernelsTest() {
+        // loaded kernels must agree with the scalar kernels within rounding
+        Kernels scalar = Kernels.scalar(), kernels = MathUtils.getKernels();
+        double difference = 0;
+
+        for (int length : new int[] { 1, 7, 64, 1001 }) {
+            double[] a = MathUtils.generate(length, () -> Math.random() * 10 - 5), b = MathUtils.generate(length, () -> Math.random() * 10 - 5);
+            difference = Math.max(difference, Math.abs(scalar.dot(a, 0, b, 0, length) - kernels.dot(a, 0, b, 0, length)) / length);
+
+            double[] y = b.clone(), yScalar = b.clone();
+            kernels.axpy(0.3, a, 0, y, 0, length);
+            scalar.axpy(0.3, a, 0, yScalar, 0, length);
+            difference = Math.max(difference, maxDifference(y, yScalar));
+
+            // every third element of a as a sparse vector
+            SparseVector sparse = SparseVector.of(IntStream.range(0, length).mapToDouble(i -> i % 3 == 0 ? a[i] : 0).toArray());
+            difference = Math.max(difference, Math.abs(scalar.dot(sparse.getValues(), sparse.getIndices(), 0, sparse.getNonZeroCount(), b, 0)
+                    - kernels.dot(sparse.getValues(), sparse.getIndices(), 0, sparse.getNonZeroCount(), b, 0)) / length);
+            y = b.clone();
+            yScalar = b.clone();
+            kernels.axpy(0.3, sparse.getValues(), sparse.getIndices(), 0, sparse.getNonZeroCount(), y, 0);
+            scalar.axpy(0.3, sparse.getValues(), sparse.getIndices(), 0, sparse.getNonZeroCount(), yScalar, 0);
+            difference = Math.max(difference, maxDifference(y, yScalar));
+
+            float[] floatA = MathUtils.toFloat(a), floatB = MathUtils.toFloat(b);
+
+            byte[] byteA = new byte[length], byteB = new byte[length];
+            for (int i = 0; i < length; i++) {
+                byteA[i] = (byte) (a[i] * 25);
+                byteB[i] = (byte) (b[i] * 25);
+            }
+            difference = Math.max(difference, Math.abs(scalar.dot(byteA, 0, byteB, 0, length) - kernels.dot(byteA, 0, byteB, 0, length)));
+            difference = Math.max(difference, Math.abs(scalar.dot(floatA, 0, floatB, 0, length) - kernels.dot(floatA, 0, floatB, 0, length)) / length * 1e-6);
+
+            for (ActivationFunction activationFunction : ActivationFunction.values()) {
+                double[] expected = a.clone();
+                for (int i = 0; i < length; i++) {
+                    expected[i] = activationFunction.applyAsDouble(expected[i]);
+                }
+                difference = Math.max(difference, maxDifference(activationFunction.apply(a.clone()), expected));
+            }
+        }
+
+        System.out.println(kernels.getClass().getSimpleName() + " largest difference from scalar: " + difference);
+    }
+
+    public static void narrowVectorKernelsTest() throws IOException, InterruptedException {
+        // 128-bit vectors, as on NEON or SSE, must still load the SIMD kernels rather than falling back to scalar ones
+        List<String> command = new ArrayList<>(List.of(ProcessHandle.current().info().command().orElse("java"), "-XX:MaxVectorSize=16"));
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            command.add("--add-modules=jdk.incubator.vector");
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), Test.class.getName(), "kernelsTest"));
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes()).lines().filter(line -> !line.startsWith("WARNING")).collect(Collectors.joining("\n"));
+        System.out.println("128-bit vectors, exit code " + process.waitFor() + ": " + output);
+    }
+
+    private static double maxDifference(double[] a, double[] b) {
+        double difference = 0;
+        for (int i = 0; i < a.length; i++) {
+            difference = Math.max(difference, Math.abs(a[i] - b[i]));
+        }
+        return difference;
+    }
+
+    public static void allocationTest() {
+        NeuralNetwork model = new NeuralNetwork(new Layer(30, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+
+        double[] x = MathUtils.generate(model.getInputSize(), Math::random);
+        double[] out = new double[model.getOutputSize()];
+
+        // warm up so the workspace exists and the forward pass is compiled
+        for (int i = 0; i < 100_000; i++) {
+            model.predictInto(x, out);
+        }
+
+        int predictions = 1_000_000;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < predictions; i++) {
+            model.predictInto(x, out);
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println("Bytes allocated per prediction: " + (double) allocated / predictions);
+        // any allocation per prediction would be at least 16 bytes, so less than one is only measurement noise
+        if (allocated >= predictions) {
+            throw new IllegalStateException("predictInto allocated " + allocated + " bytes over " + predictions + " predictions");
+        }
+
+        double[][] X = { x }, y = { { 1 } };
+        for (int i = 0; i < 100_000; i++) {
+            model.train(X, y, 0.01);
+        }
+
+        // only the array of errors returned per call to train
+        int steps = 1_000_000;
+        allocatedBefore = allocatedBytes();
+        for (int i = 0; i < steps; i++) {
+            model.train(X, y, 0.01);
+        }
+        allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println("Bytes allocated per training step: " + (double) allocated / steps);
+    }
+
+    public static void threadRetentionTest() {
+        // a thread's prediction buffers must not keep a dropped network reachable
+        List<WeakReference<Object>> networks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            NeuralNetwork model = new NeuralNetwork(new Layer(100, ActivationFunction.SIGMOID), new Layer(100, ActivationFunction.SIGMOID), new Layer(1));
+            double[] x = MathUtils.generate(model.getInputSize(), Math::random);
+            model.predict(x);
+
+            FrozenNeuralNetwork frozen = model.freeze();
+            frozen.predict(x);
+            FloatNeuralNetwork floatModel = model.toFloat();
+            floatModel.predict(MathUtils.toFloat(x));
+            QuantizedNeuralNetwork quantized = QuantizedNeuralNetwork.quantize(model, new double[][] { x });
+            quantized.predict(x);
+
+            Stream.of(model, frozen, floatModel, quantized).map(WeakReference<Object>::new).forEach(networks::add);
+        }
+
+        System.gc();
+        Map<String, Long> retained = networks.stream().map(WeakReference::get).filter(network -> network != null)
+                .collect(Collectors.groupingBy(network -> network.getClass().getSimpleName(), Collectors.counting()));
+        System.out.println("Networks retained by thread buffers after GC: " + retained);
+    }
+
+    public static void concurrentPredictionTest() {
+        NeuralNetwork model = new NeuralNetwork(new Layer(30, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1));
+        FrozenNeuralNetwork frozen = model.freeze();
+
+        double[][] X = new double[1000][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(model.getInputSize(), Math::random);
+        }
+        double[][] expected = model.predict(X);
+
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        System.out.println("Concurrent prediction mismatches (" + threads + " threads): NeuralNetwork " + concurrentMismatches(model, X, expected, threads) + ", FrozenNeuralNetwork "
+                + concurrentMismatches(frozen, X, expected, threads));
+    }
+
+    public static void inferenceServerTest() throws IOException, InterruptedException {
+        FrozenNeuralNetwork model = new NeuralNetwork(new Layer(30, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1)).freeze();
+
+        double[][] X = new double[4000][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(model.getInputSize(), Math::random);
+        }
+        double[][] expected = model.predict(X);
+
+        try (InferenceServer server = new InferenceServer(model, 32, 1, TimeUnit.MILLISECONDS, X.length)) {
+            // submit from several threads at once so requests are coalesced
+            List<CompletableFuture<double[]>> futures = IntStream.range(0, X.length).parallel().mapToObj(i -> server.submit(X[i])).collect(Collectors.toList());
+
+            double difference = 0;
+            for (int i = 0; i < X.length; i++) {
+                difference = Math.max(difference, maxDifference(futures.get(i).join(), expected[i]));
+            }
+            System.out.println("Inference server largest difference from predict: " + difference);
+            System.out.println(server.getMetrics());
+
+            try (InferenceHttpEndpoint endpoint = new InferenceHttpEndpoint(server, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+                URI uri = URI.create("http://" + endpoint.getAddress().getHostString() + ":" + endpoint.getAddress().getPort());
+                String body = DoubleStream.of(X[0]).mapToObj(Double::toString).collect(Collectors.joining(","));
+
+                HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri.resolve("/predict")).POST(BodyPublishers.ofString(body)).build(),
+                        BodyHandlers.ofString());
+                System.out.println("HTTP " + response.statusCode() + ": " + response.body().strip() + ", expected " + StringUtils.toString(expected[0]));
+            }
+        }
+    }
+
+    public static void scoringPipelineTest() throws IOException, InterruptedException {
+        FrozenNeuralNetwork model = new NeuralNetwork(new Layer(30, ActivationFunction.SIGMOID), new Layer(15, ActivationFunction.SIGMOID), new Layer(1)).freeze();
+
+        double[][] X = new double[10_000][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathUtils.generate(model.getInputSize(), Math::random);
+        }
+        double[][] expected = model.predict(X);
+
+        AtomicInteger read = new AtomicInteger();
+        double[][] output = new double[X.length][];
+        long rows = new ScoringPipeline(model, 4, 4, 16).run(() -> read.get() < X.length ? X[read.getAndIncrement()] : null, (index, x, y) -> output[(int) index] = y);
+
+        int mismatches = 0;
+        for (int i = 0; i < X.length; i++) {
+            if (output[i] == null || !MathUtils.equals(output[i], expected[i])) {
+                mismatches++;
+            }
+        }
+        System.out.println("Scoring pipeline rows: " + rows + ", mismatches: " + mismatches + ", virtual threads: " + ScoringPipeline.usesVirtualThreads());
+
+        try {
+            new ScoringPipeline(model).run(() -> X[0], (index, x, y) -> {
+                throw new IOException("Sink failed at row " + index);
+            });
+        } catch (IOException e) {
+            System.out.println("Scoring pipeline failure: " + e.getMessage());
+        }
+
+        // a sink failing once the predictors have finished and filled the queue must still end the run, so the sink is
+        // slowed down to let the predictors get ahead
+        CompletableFuture<String> lateFailure = CompletableFuture.supplyAsync(() -> {
+            AtomicInteger lateRead = new AtomicInteger();
+            try {
+                new ScoringPipeline(model, 2, 1, 4).run(() -> lateRead.get() < 100 ? X[lateRead.getAndIncrement()] : null, (index, x, y) -> {
+                    LockSupport.parkNanos(1_000_000);
+                    if (index == 95) {
+                        throw new IOException("Sink failed at row " + index);
+                    }
+                });
+                return "no failure";
+            } catch (IOException e) {
+                return e.getMessage();
+            } catch (InterruptedException e) {
+                return "interrupted";
+            }
+        });
+        try {
+            System.out.println("Scoring pipeline late failure: " + lateFailure.get(10, TimeUnit.SECONDS));
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println("Scoring pipeline late failure: " + e);
+        }
+    }
+
+    private static int concurrentMismatches(Function<double[], double[]> model, double[][] X, double[][] expected, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger mismatches = new AtomicInteger();
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int repeat = 0; repeat < 100; repeat++) {
+                        for (int i = 0; i < X.length; i++) {
+                            if (!MathUtils.equals(model.apply(X[i]), expected[i])) {
+                                mismatches.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception exception) {
+            throw new RuntimeException(exception);
+        } finally {
+            executor.shutdown();
+        }
+
+        return mismatches.get();
+    }
+
+    static Pair<double[][], double[][]> loadCancerData() {
+        List<double[]> X = new ArrayList<>();
+        List<double[]> y = new ArrayList<>();
+
+        // skip id and classification field, label as 1 if positive for cancer (malignant)
+        try (CsvReader reader = new CsvReader(FileChannel.open(Paths.get("data/cancer.csv")), IntStream.range(2, 32).toArray(), 1, Map.of("M", 1D, "B", 0D))) {
+            Batch batch = reader.newBatch(64);
+
+            while (reader.read(batch)) {
+                for (int row = 0; row < batch.getRows(); row++) {
+                    X.add(Arrays.copyOfRange(batch.getFeatures(), row * batch.getFeatureCount(), (row + 1) * batch.getFeatureCount()));
+                    y.add(Arrays.copyOfRange(batch.getLabels(), row * batch.getLabelCount(), (row + 1) * batch.getLabelCount()));
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        double[][] features = X.toArray(double[][]::new);
+
+        // normalize data
+        MathUtils.normalize(features);
+
+        return Pair.of(features, y.toArray(double[][]::new));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.tomallton.neuralnetwork;
+
+/**
+ * Receives events from an {@link Instrumentation}. Listeners are called on the thread that did the work, possibly from
+ * several threads at once, so they should be quick and thread-safe.
+ */
+public interface TrainingListener {
+
+    /**
+     * Called after each weight update.
+     *
+     * @param examples The number of examples in the step.
+     * @param nanos The time taken by the step.
+     * @param allocatedBytes The memory allocated by the step's thread, or -1 if the JVM can't measure it.
+     */
+    default void onStep(int examples, long nanos, long allocatedBytes) {
+    }
+
+    /**
+     * Called after each epoch of a {@link TrainingLoop}.
+     *
+     * @param validationLoss The mean error on the validation examples, or NaN if they were not evaluated this epoch.
+     */
+    default void onEpoch(int epoch, double loss, double validationLoss) {
+    }
+}
\ No newline at end of file
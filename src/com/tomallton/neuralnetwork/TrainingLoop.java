@@ -0,0 +1,324 @@
+package com.tomallton.neuralnetwork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import com.tomallton.neuralnetwork.util.MathUtils;
+import com.tomallton.neuralnetwork.util.Pair;
+
+/**
+ * Trains a network with mini-batches until it stops improving on a validation split. Every few epochs the mean error on
+ * the validation examples is measured, and training stops once it has failed to improve by a minimum amount for a
+ * number of validations in a row. The weights with the lowest validation error are restored when training ends.
+ * <p>
+ * With checkpoints enabled, the current weights, best weights, optimizer state and training progress are saved to a
+ * directory every few epochs, and a later call to train resumes from the last checkpoint rather than the first epoch.
+ * Resuming needs an optimizer of the same class and the same validation examples.
+ */
+public class TrainingLoop {
+    private static final String STATE_FILE = "checkpoint.properties", LATEST_PREFIX = "latest-", BEST_PREFIX = "best-", SUFFIX = ".nnet";
+    private static final String OPTIMIZER_PREFIX = "optimizer-", OPTIMIZER_SUFFIX = ".state";
+
+    private final NeuralNetwork network;
+    private final double learningRate;
+    private final int batchSize;
+    private final Optimizer optimizer;
+
+    private int validationInterval = 1, patience = Integer.MAX_VALUE;
+    private double minDelta;
+
+    private Path checkpointDirectory;
+    private int checkpointInterval;
+
+    public TrainingLoop(NeuralNetwork network, double learningRate, int batchSize) {
+        this(network, learningRate, batchSize, new SGD());
+    }
+
+    public TrainingLoop(NeuralNetwork network, double learningRate, int batchSize, Optimizer optimizer) {
+        this.network = network;
+        this.learningRate = learningRate;
+        this.batchSize = batchSize;
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Stops training once the validation error has not fallen by more than {@code minDelta} for {@code patience}
+     * validations in a row, validating every {@code validationInterval} epochs. Without early stopping, training runs
+     * for every epoch but the best weights are still kept.
+     */
+    public void setEarlyStopping(int validationInterval, int patience, double minDelta) {
+        if (validationInterval < 1 || patience < 1) {
+            throw new IllegalArgumentException("Validation interval and patience must be positive");
+        }
+        this.validationInterval = validationInterval;
+        this.patience = patience;
+        this.minDelta = minDelta;
+    }
+
+    /**
+     * Saves a checkpoint to a directory every {@code interval} epochs and when training ends, resuming from it if one
+     * already exists.
+     */
+    public void setCheckpoints(Path directory, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        this.checkpointDirectory = directory;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Trains on a random split of the examples, holding out a proportion of them for validation. The split differs on
+     * each call, so resume from a checkpoint with {@link #train(double[][], double[][], double[][], double[][], int)}
+     * and the original split instead.
+     */
+    public Result train(double[][] X, double[][] y, double validationProportion, int maxEpochs) throws IOException {
+        Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> split = MathUtils.trainTestSplit(X, y, validationProportion);
+        return train(split.getLeft().getLeft(), split.getLeft().getRight(), split.getRight().getLeft(), split.getRight().getRight(), maxEpochs);
+    }
+
+    public Result train(double[][] X, double[][] y, double[][] XValidation, double[][] yValidation, int maxEpochs) throws IOException {
+        if (XValidation.length == 0 || XValidation.length != yValidation.length) {
+            throw new IllegalArgumentException("Validation examples must be given, with as many targets as inputs");
+        }
+        BatchWorkspace workspace = new BatchWorkspace(network, batchSize);
+        Gradients gradients = new Gradients(network);
+        Workspace validationWorkspace = new Workspace(network);
+        double[][] bestWeights = Stream.of(network.getLayers()).map(layer -> layer.getWeightStorage().toArray()).toArray(double[][]::new);
+
+        State state = new State();
+        if (checkpointDirectory != null && Files.exists(checkpointDirectory.resolve(STATE_FILE))) {
+            state = resume(bestWeights);
+        }
+        int resumedFrom = state.epoch;
+        boolean bestSaved = true;
+
+        while (!state.stopped && state.epoch < maxEpochs) {
+            state.epoch++;
+            double[] errors = network.trainBatches(X, y, learningRate, workspace, gradients, optimizer);
+            double loss = MathUtils.sum(errors) / errors.length, validationLoss = Double.NaN;
+
+            if (state.epoch % validationInterval == 0) {
+                validationLoss = loss(XValidation, yValidation, validationWorkspace);
+
+                if (validationLoss < state.bestLoss - minDelta) {
+                    state.bestLoss = validationLoss;
+                    state.bestEpoch = state.epoch;
+                    state.staleValidations = 0;
+                    copyWeights(network.getLayers(), bestWeights);
+                    bestSaved = false;
+                } else if (++state.staleValidations >= patience) {
+                    state.stopped = true;
+                }
+            }
+
+            Instrumentation instrumentation = network.getInstrumentation();
+            if (instrumentation != null) {
+                instrumentation.recordEpoch(state.epoch, loss, validationLoss);
+            }
+
+            if (checkpointDirectory != null && (state.epoch % checkpointInterval == 0 || state.stopped || state.epoch == maxEpochs)) {
+                checkpoint(state, bestWeights, bestSaved);
+                bestSaved = true;
+            }
+        }
+
+        if (state.bestEpoch > 0) {
+            copyWeights(bestWeights, network.getLayers());
+        }
+        return new Result(state.epoch, state.bestEpoch, state.bestLoss, state.stopped, resumedFrom);
+    }
+
+    /**
+     * Gets the mean error of a set of examples, half the summed squared difference between outputs and targets.
+     */
+    private double loss(double[][] X, double[][] y, Workspace workspace) {
+        double loss = 0;
+
+        for (int i = 0; i < X.length; i++) {
+            double[] output = network.forward(X[i], workspace);
+            for (int neuron = 0; neuron < output.length; neuron++) {
+                loss += 0.5 * MathUtils.square(output[neuron] - y[i][neuron]);
+            }
+        }
+
+        return loss / X.length;
+    }
+
+    private State resume(double[][] bestWeights) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpointDirectory.resolve(STATE_FILE))) {
+            properties.load(reader);
+        }
+
+        State state = new State();
+        state.epoch = Integer.parseInt(properties.getProperty("epoch"));
+        state.bestEpoch = Integer.parseInt(properties.getProperty("bestEpoch"));
+        state.bestLoss = Double.parseDouble(properties.getProperty("bestLoss"));
+        state.staleValidations = Integer.parseInt(properties.getProperty("staleValidations"));
+        state.stopped = Boolean.parseBoolean(properties.getProperty("stopped"));
+
+        String optimizerClass = properties.getProperty("optimizer");
+        if (optimizerClass != null && !optimizerClass.equals(optimizer.getClass().getName())) {
+            throw new IOException("Checkpoint was saved by " + optimizerClass + " but the optimizer is " + optimizer.getClass().getName());
+        }
+        Path optimizerState = checkpointDirectory.resolve(OPTIMIZER_PREFIX + state.epoch + OPTIMIZER_SUFFIX);
+        if (Files.exists(optimizerState)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(optimizerState)))) {
+                optimizer.loadState(in, network.getLayers());
+            }
+        }
+
+        loadWeights(checkpointDirectory.resolve(LATEST_PREFIX + state.epoch + SUFFIX), network.getLayers());
+        if (state.bestEpoch > 0) {
+            Layer[] best = Stream.of(network.getLayers()).map(Layer::new).toArray(Layer[]::new);
+            loadWeights(checkpointDirectory.resolve(BEST_PREFIX + state.bestEpoch + SUFFIX), best);
+            copyWeights(best, bestWeights);
+        }
+        return state;
+    }
+
+    private void checkpoint(State state, double[][] bestWeights, boolean bestSaved) throws IOException {
+        Files.createDirectories(checkpointDirectory);
+        Path latest = checkpointDirectory.resolve(LATEST_PREFIX + state.epoch + SUFFIX);
+        Path best = checkpointDirectory.resolve(BEST_PREFIX + state.bestEpoch + SUFFIX);
+        Path optimizerState = checkpointDirectory.resolve(OPTIMIZER_PREFIX + state.epoch + OPTIMIZER_SUFFIX);
+
+        ModelFile.save(network, latest);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(optimizerState)))) {
+            optimizer.saveState(out);
+        }
+        if (state.bestEpoch > 0 && (!bestSaved || !Files.exists(best))) {
+            Layer[] layers = network.getLayers(), bestLayers = new Layer[layers.length];
+            for (int i = 0; i < layers.length; i++) {
+                Layer layer = layers[i];
+                bestLayers[i] = new Layer(layer.getInputSize(), layer.getOutputSize(), layer.hasBias(), layer.getActivationFunction(), bestWeights[i]);
+            }
+            ModelFile.save(new NeuralNetwork(bestLayers), best);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("epoch", Integer.toString(state.epoch));
+        properties.setProperty("bestEpoch", Integer.toString(state.bestEpoch));
+        properties.setProperty("bestLoss", Double.toString(state.bestLoss));
+        properties.setProperty("staleValidations", Integer.toString(state.staleValidations));
+        properties.setProperty("stopped", Boolean.toString(state.stopped));
+        properties.setProperty("optimizer", optimizer.getClass().getName());
+
+        // the state file is replaced in one step, so a checkpoint interrupted part way leaves the previous one intact
+        Path temporary = checkpointDirectory.resolve(STATE_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, "Training checkpoint");
+        }
+        Files.move(temporary, checkpointDirectory.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // remove weights and optimizer state from earlier checkpoints
+        String pattern = "{" + LATEST_PREFIX + "*" + SUFFIX + "," + BEST_PREFIX + "*" + SUFFIX + "," + OPTIMIZER_PREFIX + "*" + OPTIMIZER_SUFFIX + "}";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(checkpointDirectory, pattern)) {
+            for (Path file : files) {
+                Path name = file.getFileName();
+                if (!name.equals(latest.getFileName()) && !name.equals(best.getFileName()) && !name.equals(optimizerState.getFileName())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static void loadWeights(Path path, Layer[] layers) throws IOException {
+        Layer[] loaded = ModelFile.load(path).getLayers();
+        if (loaded.length != layers.length) {
+            throw new IOException("Checkpoint " + path + " has " + loaded.length + " layers but the network has " + layers.length);
+        }
+        for (int i = 0; i < layers.length; i++) {
+            if (loaded[i].getInputSize() != layers[i].getInputSize() || loaded[i].getOutputSize() != layers[i].getOutputSize() || loaded[i].hasBias() != layers[i].hasBias()) {
+                throw new IOException("Layer " + i + " of checkpoint " + path + " does not match the network");
+            }
+        }
+        copyWeights(loaded, layers);
+    }
+
+    private static void copyWeights(Layer[] from, double[][] to) {
+        for (int i = 0; i < from.length; i++) {
+            from[i].getWeightStorage().get(0, to[i], 0, to[i].length);
+        }
+    }
+
+    private static void copyWeights(double[][] from, Layer[] to) {
+        for (int i = 0; i < from.length; i++) {
+            to[i].getWeightStorage().set(0, from[i], 0, from[i].length);
+        }
+    }
+
+    private static void copyWeights(Layer[] from, Layer[] to) {
+        for (int i = 0; i < from.length; i++) {
+            to[i].getWeightStorage().set(0, from[i].getWeightStorage().toArray(), 0, from[i].getWeightCount());
+        }
+    }
+
+    // progress saved in checkpoints
+    private static class State {
+        private int epoch, bestEpoch, staleValidations;
+        private double bestLoss = Double.POSITIVE_INFINITY;
+        private boolean stopped;
+    }
+
+    public static class Result {
+        private final int epochs, bestEpoch, resumedFrom;
+        private final double bestValidationLoss;
+        private final boolean stoppedEarly;
+
+        private Result(int epochs, int bestEpoch, double bestValidationLoss, boolean stoppedEarly, int resumedFrom) {
+            this.epochs = epochs;
+            this.bestEpoch = bestEpoch;
+            this.bestValidationLoss = bestValidationLoss;
+            this.stoppedEarly = stoppedEarly;
+            this.resumedFrom = resumedFrom;
+        }
+
+        /**
+         * Gets the number of epochs trained, including any before resuming from a checkpoint.
+         */
+        public int getEpochs() {
+            return epochs;
+        }
+
+        /**
+         * Gets the epoch whose weights were kept, or 0 if the validation examples were never evaluated.
+         */
+        public int getBestEpoch() {
+            return bestEpoch;
+        }
+
+        public double getBestValidationLoss() {
+            return bestValidationLoss;
+        }
+
+        public boolean isStoppedEarly() {
+            return stoppedEarly;
+        }
+
+        /**
+         * Gets the epoch of the checkpoint training resumed from, or 0 if it started afresh.
+         */
+        public int getResumedFrom() {
+            return resumedFrom;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{epochs=" + epochs + ", bestEpoch=" + bestEpoch + ", bestValidationLoss=" + bestValidationLoss + ", stoppedEarly=" + stoppedEarly + ", resumedFrom="
+                    + resumedFrom + "}";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.tomallton.neuralnetwork;
+
+import java.util.SplittableRandom;
+
+/**
+ * Strategies for the random initial weights of layers created without pre-defined weights. Each row of a layer is
+ * filled from its own generator, see {@link NeuralNetwork#NeuralNetwork(long, WeightInitializer, Layer...)}, so the
+ * weights depend only on the seed however many threads fill them.
+ */
+public enum WeightInitializer {
+    /**
+     * Uniform in [0, 1), bias weights included, as networks have always been initialized.
+     */
+    UNIFORM {
+        @Override
+        void fill(double[] weights, int from, int inputSize, int outputSize, boolean bias, SplittableRandom random) {
+            for (int i = from; i < from + inputSize + (bias ? 1 : 0); i++) {
+                weights[i] = random.nextDouble();
+            }
+        }
+    },
+
+    /**
+     * Xavier or Glorot initialization, uniform in +-sqrt(6 / (inputs + outputs)) with zero bias weights, which keeps the
+     * variance of activations steady through sigmoid and tanh layers.
+     */
+    XAVIER {
+        @Override
+        void fill(double[] weights, int from, int inputSize, int outputSize, boolean bias, SplittableRandom random) {
+            double limit = Math.sqrt(6.0 / (inputSize + outputSize));
+            for (int i = from; i < from + inputSize; i++) {
+                weights[i] = random.nextDouble(-limit, limit);
+            }
+        }
+    },
+
+    /**
+     * He initialization, normal with standard deviation sqrt(2 / inputs) and zero bias weights, suited to ReLU layers.
+     */
+    HE {
+        @Override
+        void fill(double[] weights, int from, int inputSize, int outputSize, boolean bias, SplittableRandom random) {
+            double deviation = Math.sqrt(2.0 / inputSize);
+            for (int i = from; i < from + inputSize; i++) {
+                weights[i] = random.nextGaussian() * deviation;
+            }
+        }
+    };
+
+    /**
+     * Fills the row of one output neuron starting at {@code from}, its bias weight last.
+     */
+    abstract void fill(double[] weights, int from, int inputSize, int outputSize, boolean bias, SplittableRandom random);
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.tomallton.neuralnetwork;
+
+/**
+ * Holds the weights of a layer, laid out as described in {@link Layer#getWeightData()}. Operations work on whole rows
+ * or ranges of weights, so the implementation is dispatched once per row and the inner loops run on kernels specific
+ * to each storage.
+ */
+public interface WeightStorage {
+
+    /**
+     * Gets the number of weights.
+     */
+    int size();
+
+    double get(int index);
+
+    void set(int index, double value);
+
+    /**
+     * Copies {@code length} weights starting at {@code from} into an array.
+     */
+    void get(int from, double[] destination, int offset, int length);
+
+    /**
+     * Overwrites {@code length} weights starting at {@code from} with values from an array.
+     */
+    void set(int from, double[] source, int offset, int length);
+
+    /**
+     * Gets the dot product of {@code length} weights starting at {@code from} with values from an array.
+     */
+    double dot(int from, double[] x, int xOffset, int length);
+
+    /**
+     * Gets the dot product of the weights starting at {@code from} with a sparse vector, reading only the weights at
+     * its non-zero indices.
+     */
+    double dot(int from, SparseVector x);
+
+    /**
+     * Adds {@code length} weights starting at {@code from}, multiplied by {@code alpha}, to values of an array.
+     */
+    void addTo(double alpha, int from, double[] y, int yOffset, int length);
+
+    /**
+     * Adds values of an array multiplied by {@code alpha} to {@code length} weights starting at {@code from}.
+     */
+    void add(double alpha, double[] x, int xOffset, int from, int length);
+
+    /**
+     * Adds a sparse vector multiplied by {@code alpha} to the weights starting at {@code from}, changing only the
+     * weights at its non-zero indices.
+     */
+    void add(double alpha, SparseVector x, int from);
+
+    /**
+     * Updates weights {@code from} to {@code to} with an optimizer, see
+     * {@link Optimizer#update(int, double[], int, double[], int, int, double, int)}.
+     */
+    void update(Optimizer optimizer, int layer, double[] gradients, int from, int to, double learningRate, int examples);
+
+    /**
+     * Creates an independent copy in the same kind of storage.
+     */
+    WeightStorage copy();
+
+    /**
+     * Gets the array holding the weights, or null if they are not stored in an array.
+     */
+    double[] array();
+
+    default double[] toArray() {
+        double[] weights = new double[size()];
+        get(0, weights, 0, weights.length);
+        return weights;
+    }
+}
\ No newline at end of file
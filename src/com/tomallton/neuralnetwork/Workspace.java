@@ -0,0 +1,48 @@
+package com.tomallton.neuralnetwork;
+
+/**
+ * Preallocated buffers holding the activations of every layer during a forward pass, and their gradients during a
+ * backward pass, so that passes through a network allocate nothing. A workspace must only be used by one thread at a
+ * time.
+ */
+public class Workspace {
+    private final double[][] outputsBeforeActivation, outputs, derivatives, deltas;
+
+    public Workspace(NeuralNetwork network) {
+        this(network.getLayers());
+    }
+
+    public Workspace(Layer... layers) {
+        this.outputsBeforeActivation = new double[layers.length][];
+        this.outputs = new double[layers.length][];
+        this.derivatives = new double[layers.length][];
+        this.deltas = new double[layers.length][];
+
+        for (int i = 0; i < layers.length; i++) {
+            outputsBeforeActivation[i] = new double[layers[i].getOutputSize()];
+            outputs[i] = new double[layers[i].getOutputSize()];
+            derivatives[i] = new double[layers[i].getOutputSize()];
+            deltas[i] = new double[layers[i].getOutputSize()];
+        }
+    }
+
+    public double[] getOutputBeforeActivation(int layer) {
+        return outputsBeforeActivation[layer];
+    }
+
+    public double[] getOutput(int layer) {
+        return outputs[layer];
+    }
+
+    double[] getDerivatives(int layer) {
+        return derivatives[layer];
+    }
+
+    /**
+     * Gets the gradients of the error with respect to the outputs of a layer, which become the gradients with respect
+     * to its outputs before activation as the layer is passed backwards.
+     */
+    double[] getDeltas(int layer) {
+        return deltas[layer];
+    }
+}
\ No newline at end of file
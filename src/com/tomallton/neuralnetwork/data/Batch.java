@@ -0,0 +1,55 @@
+package com.tomallton.neuralnetwork.data;
+
+/**
+ * A fixed-size batch of examples, with the features and labels each stored as a row-major matrix with one row per
+ * example. Only the first {@link #getRows()} rows hold examples, the rest of the capacity is left over from earlier
+ * batches.
+ */
+public class Batch {
+    private final int capacity, featureCount, labelCount;
+    private final double[] features, labels;
+    private int rows;
+
+    public Batch(int capacity, int featureCount, int labelCount) {
+        this.capacity = capacity;
+        this.featureCount = featureCount;
+        this.labelCount = labelCount;
+        this.features = new double[capacity * featureCount];
+        this.labels = new double[capacity * labelCount];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    public double[] getFeatures() {
+        return features;
+    }
+
+    public double[] getLabels() {
+        return labels;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        if (rows < 0 || rows > capacity) {
+            throw new IllegalArgumentException("Rows must be between 0 and " + capacity);
+        }
+        this.rows = rows;
+    }
+
+    public boolean isFull() {
+        return rows == capacity;
+    }
+}
\ No newline at end of file
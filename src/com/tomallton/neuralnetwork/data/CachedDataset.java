@@ -0,0 +1,68 @@
+package com.tomallton.neuralnetwork.data;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A dataset memory-mapped from a cache file created by {@link DatasetCache}. Values are read straight from the mapped
+ * file, so no rows are parsed and the dataset takes no heap space beyond the batches read from it.
+ */
+public class CachedDataset {
+    private final int rows, featureCount, labelCount;
+    private final DoubleBuffer features, labels;
+
+    CachedDataset(int rows, int featureCount, int labelCount, DoubleBuffer features, DoubleBuffer labels) {
+        this.rows = rows;
+        this.featureCount = featureCount;
+        this.labelCount = labelCount;
+        this.features = features;
+        this.labels = labels;
+    }
+
+    /**
+     * Fills a batch with consecutive rows, starting from a row.
+     *
+     * @return False if there are no rows from that row onwards, in which case the batch has no rows.
+     */
+    public boolean read(int fromRow, Batch batch) {
+        if (batch.getFeatureCount() != featureCount || batch.getLabelCount() != labelCount) {
+            throw new IllegalArgumentException("Batch does not have " + featureCount + " features and " + labelCount + " labels");
+        }
+        int batchRows = Math.max(0, Math.min(batch.getCapacity(), rows - fromRow));
+
+        features.get(fromRow * featureCount, batch.getFeatures(), 0, batchRows * featureCount);
+        labels.get(fromRow * labelCount, batch.getLabels(), 0, batchRows * labelCount);
+
+        batch.setRows(batchRows);
+        return batchRows > 0;
+    }
+
+    public Batch newBatch(int capacity) {
+        return new Batch(capacity, featureCount, labelCount);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Gets a read-only view of the features, a row-major matrix with one row per example.
+     */
+    public DoubleBuffer getFeatures() {
+        return features.asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets a read-only view of the labels, a row-major matrix with one row per example.
+     */
+    public DoubleBuffer getLabels() {
+        return labels.asReadOnlyBuffer();
+    }
+}
\ No newline at end of file
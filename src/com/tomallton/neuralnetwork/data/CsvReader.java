@@ -0,0 +1,286 @@
+package com.tomallton.neuralnetwork.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reads examples from comma separated values incrementally, so that files of any size can be read in fixed-size batches.
+ * Selected columns are parsed as features and labels straight from the bytes read, without creating a string per line
+ * or per field. Labels are either numeric columns or a single column whose values are mapped to numbers, such as "M"
+ * and "B". Quoted fields are not supported.
+ */
+public class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int SKIP = -1, LABEL = -2;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final int featureCount, labelCount;
+
+    // what each column is read into: a feature index, an offset label index, or SKIP
+    private final int[] columns;
+    private final byte[][] labelNames;
+    private final double[] labelValues;
+
+    private byte[] line = new byte[256];
+    private int lineLength, linesToSkip, lineNumber;
+    private boolean endOfInput;
+
+    /**
+     * Creates a reader with numeric labels.
+     */
+    public CsvReader(ReadableByteChannel channel, int[] featureColumns, int[] labelColumns) {
+        this(channel, featureColumns, labelColumns, null);
+    }
+
+    /**
+     * Creates a reader with a single label column whose values are mapped to numbers.
+     */
+    public CsvReader(ReadableByteChannel channel, int[] featureColumns, int labelColumn, Map<String, Double> labels) {
+        this(channel, featureColumns, new int[] { labelColumn }, labels);
+    }
+
+    private CsvReader(ReadableByteChannel channel, int[] featureColumns, int[] labelColumns, Map<String, Double> labels) {
+        this.channel = channel;
+        this.buffer.limit(0);
+        this.featureCount = featureColumns.length;
+        this.labelCount = labelColumns.length;
+
+        int columnCount = Math.max(Arrays.stream(featureColumns).max().orElse(-1), Arrays.stream(labelColumns).max().orElse(-1)) + 1;
+        this.columns = new int[columnCount];
+        Arrays.fill(columns, SKIP);
+
+        for (int i = 0; i < featureColumns.length; i++) {
+            columns[featureColumns[i]] = i;
+        }
+        for (int i = 0; i < labelColumns.length; i++) {
+            if (columns[labelColumns[i]] != SKIP) {
+                throw new IllegalArgumentException("Column " + labelColumns[i] + " is selected more than once");
+            }
+            columns[labelColumns[i]] = LABEL - i;
+        }
+
+        if (labels == null) {
+            this.labelNames = null;
+            this.labelValues = null;
+        } else {
+            this.labelNames = labels.keySet().stream().map(name -> name.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+            this.labelValues = labels.keySet().stream().mapToDouble(labels::get).toArray();
+        }
+    }
+
+    /**
+     * Skips lines at the start of the input, such as a header.
+     */
+    public CsvReader skipLines(int lines) {
+        this.linesToSkip = lines;
+        return this;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Creates a batch with room for the selected features and labels.
+     */
+    public Batch newBatch(int capacity) {
+        return new Batch(capacity, featureCount, labelCount);
+    }
+
+    /**
+     * Fills a batch with the next examples, overwriting whatever it held.
+     *
+     * @return False once there are no examples left, in which case the batch has no rows.
+     */
+    public boolean read(Batch batch) throws IOException {
+        if (batch.getFeatureCount() != featureCount || batch.getLabelCount() != labelCount) {
+            throw new IllegalArgumentException("Batch does not have " + featureCount + " features and " + labelCount + " labels");
+        }
+        int rows = 0;
+
+        while (rows < batch.getCapacity() && readLine()) {
+            if (linesToSkip > 0) {
+                linesToSkip--;
+                continue;
+            }
+            if (lineLength > 0) {
+                parseLine(batch.getFeatures(), rows * featureCount, batch.getLabels(), rows * labelCount);
+                rows++;
+            }
+        }
+
+        batch.setRows(rows);
+        return rows > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the next line into the line buffer, without its line terminator.
+     *
+     * @return False if the input has ended.
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (endOfInput) {
+                    return lineLength > 0;
+                }
+                buffer.clear();
+                endOfInput = channel.read(buffer) < 0;
+                buffer.flip();
+                continue;
+            }
+
+            byte[] bytes = buffer.array();
+            int start = buffer.position(), end = buffer.limit();
+            int newline = start;
+            while (newline < end && bytes[newline] != '\n') {
+                newline++;
+            }
+
+            append(bytes, start, newline);
+            buffer.position(Math.min(newline + 1, end));
+
+            if (newline < end) {
+                lineNumber++;
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+        }
+    }
+
+    private void append(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(bytes, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private void parseLine(double[] features, int featureOffset, double[] labels, int labelOffset) {
+        int column = 0, found = 0;
+
+        for (int from = 0; from <= lineLength && column < columns.length; column++) {
+            int to = from;
+            while (to < lineLength && line[to] != ',') {
+                to++;
+            }
+
+            int target = columns[column];
+            if (target >= 0) {
+                features[featureOffset + target] = parseDouble(line, from, to);
+                found++;
+            } else if (target <= LABEL) {
+                labels[labelOffset + LABEL - target] = labelNames == null ? parseDouble(line, from, to) : mapLabel(from, to);
+                found++;
+            }
+
+            from = to + 1;
+        }
+
+        if (found != featureCount + labelCount) {
+            throw new IllegalArgumentException("Line " + lineNumber + " has fewer than " + columns.length + " columns");
+        }
+    }
+
+    private double mapLabel(int from, int to) {
+        for (int i = 0; i < labelNames.length; i++) {
+            if (Arrays.equals(labelNames[i], 0, labelNames[i].length, line, from, to)) {
+                return labelValues[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown label " + new String(line, from, to - from, StandardCharsets.UTF_8) + " on line " + lineNumber);
+    }
+
+    /**
+     * Parses a decimal number from ASCII bytes. Numbers with at most 18 significant digits and a small exponent, which
+     * covers almost all data, are parsed exactly without allocating. Anything else falls back to
+     * {@link Double#parseDouble(String)}.
+     */
+    static double parseDouble(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0, exponent = 0;
+        boolean digits = false, exact = true;
+
+        for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            digits = true;
+            if (significantDigits < 18) {
+                mantissa = mantissa * 10 + bytes[i] - '0';
+                significantDigits += mantissa > 0 ? 1 : 0;
+            } else {
+                exponent++;
+                exact = false;
+            }
+        }
+        if (i < to && bytes[i] == '.') {
+            for (i++; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                digits = true;
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + bytes[i] - '0';
+                    significantDigits += mantissa > 0 ? 1 : 0;
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+            }
+        }
+        if (digits && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            boolean exponentDigits = false;
+            for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                exponentDigits = true;
+                explicitExponent = Math.min(explicitExponent * 10 + bytes[i] - '0', 10_000);
+            }
+            exact &= exponentDigits;
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (!digits || i != to || !exact || mantissa >= 1L << 53 || Math.abs(exponent) >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII).trim());
+        }
+
+        // both operands are exact, so a single operation rounds correctly
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.tomallton.neuralnetwork.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Function;
+
+/**
+ * Converts a CSV dataset into a binary cache file once, so that later runs memory-map the parsed values instead of
+ * parsing the text again. A cache is rebuilt whenever the size or modification time of its source file changes. All
+ * values are little-endian:
+ *
+ * <pre>
+ * header   magic "NNDS", int version, int feature count, int label count, long rows, long source size,
+ *          long source modification time in milliseconds
+ * features row-major doubles, one row per example
+ * labels   row-major doubles, one row per example
+ * </pre>
+ */
+public class DatasetCache {
+    private static final int MAGIC = 0x53444E4E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Opens the cache of a CSV file, creating it first if it is missing or out of date.
+     *
+     * @param readers Creates the reader used to convert the source file, which selects its features and labels.
+     */
+    public static CachedDataset open(Path source, Path cache, Function<ReadableByteChannel, CsvReader> readers) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        long size = attributes.size(), modified = attributes.lastModifiedTime().toMillis();
+
+        if (!isValid(cache, size, modified)) {
+            convert(source, cache, readers, size, modified);
+        }
+        return map(cache);
+    }
+
+    public static boolean isValid(Path cache, long sourceSize, long sourceModified) throws IOException {
+        if (!Files.isRegularFile(cache) || Files.size(cache) < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+        }
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getLong(24) == sourceSize && header.getLong(32) == sourceModified;
+    }
+
+    private static void convert(Path source, Path cache, Function<ReadableByteChannel, CsvReader> readers, long sourceSize, long sourceModified) throws IOException {
+        Path features = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".features");
+        Path labels = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".labels");
+
+        try {
+            long rows = 0;
+            int featureCount, labelCount;
+
+            // features are written after the header and labels to a separate file, so both sections are written in one pass
+            try (CsvReader reader = readers.apply(FileChannel.open(source, StandardOpenOption.READ));
+                    FileChannel featureChannel = FileChannel.open(features, StandardOpenOption.WRITE);
+                    FileChannel labelChannel = FileChannel.open(labels, StandardOpenOption.WRITE)) {
+                featureCount = reader.getFeatureCount();
+                labelCount = reader.getLabelCount();
+
+                Batch batch = reader.newBatch(BATCH_SIZE);
+                ByteBuffer buffer = ByteBuffer.allocate(BATCH_SIZE * Math.max(featureCount, labelCount) * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+                featureChannel.position(HEADER_SIZE);
+                while (reader.read(batch)) {
+                    write(featureChannel, buffer, batch.getFeatures(), batch.getRows() * featureCount);
+                    write(labelChannel, buffer, batch.getLabels(), batch.getRows() * labelCount);
+                    rows += batch.getRows();
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(featureCount).putInt(labelCount).putLong(rows).putLong(sourceSize).putLong(sourceModified);
+                header.flip();
+                featureChannel.position(0);
+                while (header.hasRemaining()) {
+                    featureChannel.write(header);
+                }
+
+                featureChannel.position(HEADER_SIZE + rows * featureCount * Double.BYTES);
+                labelChannel.position(0);
+                long transferred = 0, labelBytes = rows * labelCount * Double.BYTES;
+                try (FileChannel labelInput = FileChannel.open(labels, StandardOpenOption.READ)) {
+                    while (transferred < labelBytes) {
+                        transferred += labelInput.transferTo(transferred, labelBytes - transferred, featureChannel);
+                    }
+                }
+            }
+
+            Files.move(features, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(features);
+            Files.deleteIfExists(labels);
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, double[] values, int length) throws IOException {
+        buffer.clear();
+        buffer.asDoubleBuffer().put(values, 0, length);
+        buffer.limit(length * Double.BYTES);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static CachedDataset map(Path cache) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int featureCount = header.getInt(8), labelCount = header.getInt(12);
+            long rows = header.getLong(16);
+
+            long featureBytes = rows * featureCount * Double.BYTES, labelBytes = rows * labelCount * Double.BYTES;
+            if (featureBytes > Integer.MAX_VALUE || labelBytes > Integer.MAX_VALUE) {
+                throw new IOException("Cached datasets are limited to 2 GB of features and of labels");
+            }
+
+            return new CachedDataset((int) rows, featureCount, labelCount,
+                    channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, featureBytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer(),
+                    channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + featureBytes, labelBytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+        }
+    }
+}
\ No newline at end of file
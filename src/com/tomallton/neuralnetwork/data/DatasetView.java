@@ -0,0 +1,352 @@
+package com.tomallton.neuralnetwork.data;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.tomallton.neuralnetwork.util.Pair;
+
+/**
+ * An ordered selection of the examples of a dataset, stored as the indices of their rows. Shuffling and splitting only
+ * rearrange indices, so the rows are never copied or boxed, and batches are read straight from the arrays or
+ * {@link CachedDataset} holding them. Views share their examples but not their order, so shuffling one leaves the others
+ * as they were.
+ */
+public class DatasetView {
+    // exactly one of the arrays or the buffers holds the examples
+    private final double[][] X, y;
+    private final DoubleBuffer features, labels;
+    private final int featureCount, labelCount;
+
+    private final int[] rows;
+
+    private DatasetView(double[][] X, double[][] y, DoubleBuffer features, DoubleBuffer labels, int featureCount, int labelCount, int[] rows) {
+        this.X = X;
+        this.y = y;
+        this.features = features;
+        this.labels = labels;
+        this.featureCount = featureCount;
+        this.labelCount = labelCount;
+        this.rows = rows;
+    }
+
+    /**
+     * Creates a view of every example, in order.
+     */
+    public static DatasetView of(double[][] X, double[][] y) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("Length of arrays are not the same");
+        }
+        if (X.length == 0) {
+            throw new IllegalArgumentException("No examples given");
+        }
+        return new DatasetView(X, y, null, null, X[0].length, y[0].length, identity(X.length));
+    }
+
+    /**
+     * Creates a view of every example of a cached dataset, in order.
+     */
+    public static DatasetView of(CachedDataset dataset) {
+        return new DatasetView(null, null, dataset.getFeatures(), dataset.getLabels(), dataset.getFeatureCount(), dataset.getLabelCount(), identity(dataset.getRows()));
+    }
+
+    private static int[] identity(int size) {
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private DatasetView withRows(int[] rows) {
+        return new DatasetView(X, y, features, labels, featureCount, labelCount, rows);
+    }
+
+    /**
+     * Shuffles the examples in place, for example once per epoch.
+     */
+    public DatasetView shuffle(SplittableRandom random) {
+        for (int i = rows.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1), row = rows[i];
+            rows[i] = rows[j];
+            rows[j] = row;
+        }
+        return this;
+    }
+
+    /**
+     * Creates a shuffled copy of the view, leaving this one in its order.
+     */
+    public DatasetView shuffled(long seed) {
+        return copy().shuffle(new SplittableRandom(seed));
+    }
+
+    public DatasetView copy() {
+        return withRows(rows.clone());
+    }
+
+    /**
+     * Creates a view of the examples from one position to another.
+     */
+    public DatasetView range(int from, int to) {
+        return withRows(Arrays.copyOfRange(rows, from, to));
+    }
+
+    /**
+     * Splits the examples in their current order into consecutive views holding the given proportions of them, such as
+     * {@code split(0.6, 0.2, 0.2)} for training, validation and test sets.
+     */
+    public DatasetView[] split(double... proportions) {
+        int[] bounds = bounds(rows.length, proportions);
+        DatasetView[] views = new DatasetView[proportions.length];
+
+        for (int i = 0; i < views.length; i++) {
+            views[i] = range(bounds[i], bounds[i + 1]);
+        }
+        return views;
+    }
+
+    /**
+     * Splits the examples randomly into views holding the given proportions of them, with each class as close as
+     * possible to its proportion of the whole in every view. See {@link #getClasses()} for how classes are found.
+     */
+    public DatasetView[] stratifiedSplit(long seed, double... proportions) {
+        int[][] classes = shuffledClasses(seed);
+        int[][] parts = new int[proportions.length][rows.length];
+        int[] sizes = new int[proportions.length];
+
+        // split every class by the proportions, so rounding leaves each view at most one example of a class off
+        for (int[] members : classes) {
+            int[] bounds = bounds(members.length, proportions);
+            for (int i = 0; i < parts.length; i++) {
+                System.arraycopy(members, bounds[i], parts[i], sizes[i], bounds[i + 1] - bounds[i]);
+                sizes[i] += bounds[i + 1] - bounds[i];
+            }
+        }
+
+        DatasetView[] views = new DatasetView[proportions.length];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = withRows(Arrays.copyOf(parts[i], sizes[i])).shuffle(new SplittableRandom(seed + i));
+        }
+        return views;
+    }
+
+    /**
+     * Splits the examples in their current order into k folds, giving for each fold the other examples to train on and
+     * the fold to validate on.
+     */
+    public List<Pair<DatasetView, DatasetView>> kFold(int k) {
+        int[] bounds = new int[foldCount(k) + 1];
+        for (int fold = 0; fold <= k; fold++) {
+            bounds[fold] = (int) ((long) rows.length * fold / k);
+        }
+        return folds(rows, bounds);
+    }
+
+    /**
+     * Splits the examples randomly into k folds with each class spread as evenly as possible between them, giving for
+     * each fold the other examples to train on and the fold to validate on.
+     */
+    public List<Pair<DatasetView, DatasetView>> stratifiedKFold(int k, long seed) {
+        // dealing the examples out to the folds in turn gives the first folds one extra example each
+        int[] bounds = new int[foldCount(k) + 1];
+        for (int fold = 0; fold < k; fold++) {
+            bounds[fold + 1] = bounds[fold] + rows.length / k + (fold < rows.length % k ? 1 : 0);
+        }
+
+        int[] dealt = new int[rows.length], next = Arrays.copyOf(bounds, k);
+        int fold = 0;
+        for (int[] members : shuffledClasses(seed)) {
+            for (int row : members) {
+                dealt[next[fold]++] = row;
+                fold = (fold + 1) % k;
+            }
+        }
+        return folds(dealt, bounds);
+    }
+
+    private int foldCount(int k) {
+        if (k < 2 || k > rows.length) {
+            throw new IllegalArgumentException("Cannot split " + rows.length + " examples into " + k + " folds");
+        }
+        return k;
+    }
+
+    private List<Pair<DatasetView, DatasetView>> folds(int[] order, int[] bounds) {
+        List<Pair<DatasetView, DatasetView>> folds = new ArrayList<>(bounds.length - 1);
+
+        for (int fold = 0; fold < bounds.length - 1; fold++) {
+            int from = bounds[fold], to = bounds[fold + 1];
+
+            int[] training = new int[order.length - (to - from)];
+            System.arraycopy(order, 0, training, 0, from);
+            System.arraycopy(order, to, training, from, order.length - to);
+
+            folds.add(Pair.of(withRows(training), withRows(Arrays.copyOfRange(order, from, to))));
+        }
+        return folds;
+    }
+
+    /**
+     * Gets the positions at which to split a number of examples by proportions, rounding the running total so the sizes
+     * add up.
+     */
+    private static int[] bounds(int size, double[] proportions) {
+        double total = 0;
+        for (double proportion : proportions) {
+            if (proportion < 0) {
+                throw new IllegalArgumentException("Proportions must not be negative");
+            }
+            total += proportion;
+        }
+        if (Math.abs(total - 1) > 1e-9) {
+            throw new IllegalArgumentException("Proportions must add up to 1, not " + total);
+        }
+
+        int[] bounds = new int[proportions.length + 1];
+        double cumulative = 0;
+        for (int i = 0; i < proportions.length; i++) {
+            cumulative += proportions[i];
+            bounds[i + 1] = i == proportions.length - 1 ? size : (int) Math.round(cumulative * size);
+        }
+        return bounds;
+    }
+
+    /**
+     * Groups the examples by class, each group shuffled.
+     */
+    private int[][] shuffledClasses(long seed) {
+        int[] classes = getClasses();
+        int classCount = 0;
+        for (int c : classes) {
+            classCount = Math.max(classCount, c + 1);
+        }
+
+        int[] sizes = new int[classCount];
+        for (int c : classes) {
+            sizes[c]++;
+        }
+        int[][] members = new int[classCount][];
+        for (int c = 0; c < classCount; c++) {
+            members[c] = new int[sizes[c]];
+            sizes[c] = 0;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            members[classes[i]][sizes[classes[i]]++] = rows[i];
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int[] group : members) {
+            withRows(group).shuffle(random);
+        }
+        return members;
+    }
+
+    /**
+     * Gets the class of each example as a number from 0. With a single label, each distinct label value is a class,
+     * numbered in ascending order of value. With several labels, the class is the label with the largest value, as with
+     * one-hot targets.
+     */
+    public int[] getClasses() {
+        int[] classes = new int[rows.length];
+
+        if (labelCount > 1) {
+            for (int i = 0; i < rows.length; i++) {
+                int largest = 0;
+                for (int label = 1; label < labelCount; label++) {
+                    if (getLabel(rows[i], label) > getLabel(rows[i], largest)) {
+                        largest = label;
+                    }
+                }
+                classes[i] = largest;
+            }
+            return classes;
+        }
+
+        double[] values = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            values[i] = getLabel(rows[i], 0);
+        }
+        double[] distinct = Arrays.stream(values).sorted().distinct().toArray();
+        for (int i = 0; i < rows.length; i++) {
+            classes[i] = Arrays.binarySearch(distinct, values[i]);
+        }
+        return classes;
+    }
+
+    private double getLabel(int row, int label) {
+        return y != null ? y[row][label] : labels.get(row * labelCount + label);
+    }
+
+    /**
+     * Fills a batch with the examples from a position in the view onwards, gathering their rows.
+     *
+     * @return False if there are no examples from that position onwards, in which case the batch has no rows.
+     */
+    public boolean read(int from, Batch batch) {
+        if (batch.getFeatureCount() != featureCount || batch.getLabelCount() != labelCount) {
+            throw new IllegalArgumentException("Batch does not have " + featureCount + " features and " + labelCount + " labels");
+        }
+        int batchRows = Math.max(0, Math.min(batch.getCapacity(), rows.length - from));
+
+        for (int i = 0; i < batchRows; i++) {
+            int row = rows[from + i];
+            if (X != null) {
+                System.arraycopy(X[row], 0, batch.getFeatures(), i * featureCount, featureCount);
+                System.arraycopy(y[row], 0, batch.getLabels(), i * labelCount, labelCount);
+            } else {
+                features.get(row * featureCount, batch.getFeatures(), i * featureCount, featureCount);
+                labels.get(row * labelCount, batch.getLabels(), i * labelCount, labelCount);
+            }
+        }
+
+        batch.setRows(batchRows);
+        return batchRows > 0;
+    }
+
+    public Batch newBatch(int capacity) {
+        return new Batch(capacity, featureCount, labelCount);
+    }
+
+    /**
+     * Gets the features and labels of the examples in order. Rows of arrays are shared rather than copied, while rows
+     * of a cached dataset are read onto the heap.
+     */
+    public Pair<double[][], double[][]> toArrays() {
+        double[][] XView = new double[rows.length][], yView = new double[rows.length][];
+
+        for (int i = 0; i < rows.length; i++) {
+            if (X != null) {
+                XView[i] = X[rows[i]];
+                yView[i] = y[rows[i]];
+            } else {
+                XView[i] = new double[featureCount];
+                yView[i] = new double[labelCount];
+                features.get(rows[i] * featureCount, XView[i]);
+                labels.get(rows[i] * labelCount, yView[i]);
+            }
+        }
+        return Pair.of(XView, yView);
+    }
+
+    /**
+     * Gets the index in the underlying dataset of the example at a position in the view.
+     */
+    public int getRow(int index) {
+        return rows[index];
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public int getLabelCount() {
+        return labelCount;
+    }
+}
\ No newline at end of file
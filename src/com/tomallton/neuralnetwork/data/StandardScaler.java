@@ -0,0 +1,159 @@
+package com.tomallton.neuralnetwork.data;
+
+import java.io.Serializable;
+import java.util.stream.IntStream;
+
+/**
+ * Scales features to have a mean of zero and a standard deviation of one. Statistics are gathered in a single pass with
+ * Welford's algorithm, either over a whole dataset or incrementally over batches, and fitted scalers over separate parts
+ * of a dataset can be merged. Once fitted, the same statistics can be saved and applied to inference inputs.
+ */
+public class StandardScaler implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // number of columns fitted by each parallel task
+    private static final int COLUMN_CHUNK_SIZE = 16;
+
+    private final double[] mean, squaredDeviations;
+    private long count;
+    // multipliers applied by transform, computed on first use after the statistics change
+    private transient volatile double[] inverseStandardDeviation;
+
+    public StandardScaler(int features) {
+        this.mean = new double[features];
+        this.squaredDeviations = new double[features];
+    }
+
+    /**
+     * Updates the statistics with a dataset, fitting chunks of columns in parallel.
+     */
+    public StandardScaler fit(double[][] X) {
+        int chunks = (mean.length + COLUMN_CHUNK_SIZE - 1) / COLUMN_CHUNK_SIZE;
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * COLUMN_CHUNK_SIZE, to = Math.min(from + COLUMN_CHUNK_SIZE, mean.length);
+            for (int row = 0; row < X.length; row++) {
+                update(X[row], 0, count + row + 1, from, to);
+            }
+        });
+        count += X.length;
+        inverseStandardDeviation = null;
+
+        return this;
+    }
+
+    /**
+     * Updates the statistics with the rows of a batch.
+     */
+    public StandardScaler fit(Batch batch) {
+        return fit(batch.getFeatures(), batch.getRows());
+    }
+
+    /**
+     * Updates the statistics with a row-major matrix of features with one row per example.
+     */
+    public StandardScaler fit(double[] features, int rows) {
+        for (int row = 0; row < rows; row++) {
+            update(features, row * mean.length, ++count, 0, mean.length);
+        }
+        inverseStandardDeviation = null;
+        return this;
+    }
+
+    private void update(double[] features, int offset, long count, int from, int to) {
+        for (int i = from; i < to; i++) {
+            double x = features[offset + i];
+            double delta = x - mean[i];
+            mean[i] += delta / count;
+            squaredDeviations[i] += delta * (x - mean[i]);
+        }
+    }
+
+    /**
+     * Combines the statistics of another scaler, fitted on different examples, into this one.
+     */
+    public StandardScaler merge(StandardScaler other) {
+        if (other.mean.length != mean.length) {
+            throw new IllegalArgumentException("Scalers have a different number of features");
+        }
+        long total = count + other.count;
+        if (other.count == 0) {
+            return this;
+        }
+
+        for (int i = 0; i < mean.length; i++) {
+            double delta = other.mean[i] - mean[i];
+            mean[i] += delta * other.count / total;
+            squaredDeviations[i] += other.squaredDeviations[i] + delta * delta * count * other.count / total;
+        }
+        count = total;
+        inverseStandardDeviation = null;
+
+        return this;
+    }
+
+    /**
+     * Scales the features of a dataset in place.
+     */
+    public double[][] transform(double[][] X) {
+        for (double[] x : X) {
+            transform(x, 0);
+        }
+        return X;
+    }
+
+    /**
+     * Scales the features of an example in place.
+     */
+    public double[] transform(double[] x) {
+        return transform(x, 0);
+    }
+
+    /**
+     * Scales the features of every row of a batch in place.
+     */
+    public Batch transform(Batch batch) {
+        for (int row = 0; row < batch.getRows(); row++) {
+            transform(batch.getFeatures(), row * mean.length);
+        }
+        return batch;
+    }
+
+    private double[] transform(double[] features, int offset) {
+        double[] inverseStandardDeviation = getInverseStandardDeviation();
+        for (int i = 0; i < mean.length; i++) {
+            features[offset + i] = (features[offset + i] - mean[i]) * inverseStandardDeviation[i];
+        }
+        return features;
+    }
+
+    private double[] getInverseStandardDeviation() {
+        double[] inverseStandardDeviation = this.inverseStandardDeviation;
+        if (inverseStandardDeviation == null) {
+            inverseStandardDeviation = new double[mean.length];
+            for (int i = 0; i < mean.length; i++) {
+                double standardDeviation = getStandardDeviation(i);
+                // constant features are only centred
+                inverseStandardDeviation[i] = standardDeviation == 0 ? 1 : 1 / standardDeviation;
+            }
+            this.inverseStandardDeviation = inverseStandardDeviation;
+        }
+        return inverseStandardDeviation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double[] getMean() {
+        return mean.clone();
+    }
+
+    public double[] getStandardDeviation() {
+        return IntStream.range(0, mean.length).mapToDouble(this::getStandardDeviation).toArray();
+    }
+
+    private double getStandardDeviation(int feature) {
+        return count == 0 ? 0 : Math.sqrt(squaredDeviations[feature] / count);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.tomallton.neuralnetwork.serving;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP front end to an {@link InferenceServer} using the JDK's built-in server.
+ * <ul>
+ * <li>{@code POST /predict} with a body of comma separated inputs responds with the comma separated outputs.</li>
+ * <li>{@code GET /metrics} responds with the server's {@link InferenceMetrics}.</li>
+ * </ul>
+ * Requests are handed to the inference server without blocking, so concurrent HTTP requests are batched together.
+ */
+public class InferenceHttpEndpoint implements Closeable {
+    private final InferenceServer server;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    public InferenceHttpEndpoint(InferenceServer server, InetSocketAddress address) throws IOException {
+        this.server = server;
+        this.httpServer = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        httpServer.createContext("/predict", this::predict);
+        httpServer.createContext("/metrics", this::metrics);
+        httpServer.setExecutor(executor);
+        httpServer.start();
+    }
+
+    /**
+     * Gets the address the endpoint is listening on, which includes the chosen port if port 0 was requested.
+     */
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    /**
+     * Stops listening, without closing the inference server.
+     */
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executor.shutdown();
+    }
+
+    private void predict(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "POST a comma separated input");
+            return;
+        }
+
+        try {
+            double[] x = parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).strip());
+            server.submit(x).whenCompleteAsync((output, e) -> {
+                if (e == null) {
+                    respond(exchange, 200, DoubleStream.of(output).mapToObj(Double::toString).collect(Collectors.joining(",")));
+                } else {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    respond(exchange, cause instanceof RejectedExecutionException ? 503 : 500, String.valueOf(cause.getMessage()));
+                }
+            }, executor);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void metrics(HttpExchange exchange) {
+        respond(exchange, 200, server.getMetrics().toString());
+    }
+
+    private static double[] parse(String body) {
+        if (body.isEmpty()) {
+            return new double[0];
+        }
+        String[] values = body.split(",");
+        double[] x = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            x[i] = Double.parseDouble(values[i].strip());
+        }
+        return x;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) {
+        byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // client has gone away
+        } finally {
+            exchange.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.tomallton.neuralnetwork.serving;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Live counters for an {@link InferenceServer}. Values are read without locking, so a snapshot taken while requests are
+ * being served may be slightly inconsistent between getters.
+ */
+public final class InferenceMetrics {
+    private final LongAdder requests = new LongAdder(), rejected = new LongAdder(), failed = new LongAdder();
+    private final AtomicLongArray batchSizes;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final IntSupplier queueDepth;
+
+    InferenceMetrics(int maxBatchSize, IntSupplier queueDepth) {
+        this.batchSizes = new AtomicLongArray(maxBatchSize + 1);
+        this.queueDepth = queueDepth;
+    }
+
+    void recordBatch(int size) {
+        batchSizes.incrementAndGet(size);
+    }
+
+    void recordRequest(long latency) {
+        requests.increment();
+        latencies.record(latency);
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    /**
+     * Gets the number of requests that have been predicted.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Gets the number of requests refused because the queue was full or the server was closed.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the number of requests whose batch threw an exception.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public long getBatches() {
+        long batches = 0;
+        for (int size = 1; size < batchSizes.length(); size++) {
+            batches += batchSizes.get(size);
+        }
+        return batches;
+    }
+
+    /**
+     * Gets the number of batches run of each size, indexed by size.
+     */
+    public long[] getBatchSizes() {
+        long[] batchSizes = new long[this.batchSizes.length()];
+        for (int size = 0; size < batchSizes.length; size++) {
+            batchSizes[size] = this.batchSizes.get(size);
+        }
+        return batchSizes;
+    }
+
+    public double getMeanBatchSize() {
+        long batches = 0, rows = 0;
+        for (int size = 1; size < batchSizes.length(); size++) {
+            batches += batchSizes.get(size);
+            rows += size * batchSizes.get(size);
+        }
+        return batches == 0 ? 0 : (double) rows / batches;
+    }
+
+    /**
+     * Gets a percentile of the time from submitting a request to its result being ready, to within 12.5%.
+     */
+    public long getLatency(double percentile, TimeUnit unit) {
+        return unit.convert(latencies.getPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "InferenceMetrics{requests=" + getRequests() + ", rejected=" + getRejected() + ", failed=" + getFailed() + ", queueDepth=" + getQueueDepth() + ", batches="
+                + getBatches() + ", meanBatchSize=" + String.format("%.2f", getMeanBatchSize()) + ", latencyMicros={p50=" + getLatency(50, TimeUnit.MICROSECONDS) + ", p90="
+                + getLatency(90, TimeUnit.MICROSECONDS) + ", p99=" + getLatency(99, TimeUnit.MICROSECONDS) + ", max=" + getLatency(100, TimeUnit.MICROSECONDS) + "}}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,184 @@
+package com.tomallton.neuralnetwork.serving;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.tomallton.neuralnetwork.BatchWorkspace;
+import com.tomallton.neuralnetwork.FrozenNeuralNetwork;
+
+/**
+ * Serves predictions for single inputs submitted from any number of threads, coalescing them into batches that are
+ * passed through the network together. A batch is run once it holds {@code maxBatchSize} inputs or its first input
+ * has waited {@code maxDelay}, whichever comes first.
+ * <p>
+ * Futures are completed on the server's batching thread, so work that depends on them should use the asynchronous
+ * methods of {@link CompletableFuture} to avoid delaying the next batch.
+ */
+public class InferenceServer implements Closeable {
+    private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final FrozenNeuralNetwork model;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final BlockingQueue<Request> queue;
+    private final InferenceMetrics metrics;
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    public InferenceServer(FrozenNeuralNetwork model, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        this(model, maxBatchSize, maxDelay, unit, 64 * maxBatchSize);
+    }
+
+    /**
+     * @param queueCapacity The number of requests that can wait for a batch before further requests are rejected.
+     */
+    public InferenceServer(FrozenNeuralNetwork model, int maxBatchSize, long maxDelay, TimeUnit unit, int queueCapacity) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.model = model;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.metrics = new InferenceMetrics(maxBatchSize, queue::size);
+
+        this.thread = new Thread(this::run, "inference-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues an input to be predicted in the next batch. The future fails with a {@link RejectedExecutionException} if
+     * the queue is full or the server has been closed.
+     */
+    public CompletableFuture<double[]> submit(double... x) {
+        if (x.length != model.getInputSize()) {
+            throw new IllegalArgumentException(x.length + " inputs given but expected " + model.getInputSize());
+        }
+        Request request = new Request(x);
+
+        if (closed || !queue.offer(request)) {
+            return reject(request, closed ? "Server is closed" : "Queue is full");
+        }
+        // the batching thread may have drained the queue for the last time since closed was checked
+        if (closed && queue.remove(request)) {
+            return reject(request, "Server is closed");
+        }
+        return request.future;
+    }
+
+    public InferenceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public FrozenNeuralNetwork getModel() {
+        return model;
+    }
+
+    /**
+     * Stops accepting requests and waits for those already queued to be predicted.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        BatchWorkspace workspace = model.newBatchWorkspace(maxBatchSize);
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Request first = queue.poll(POLL_INTERVAL, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // wait for the batch to fill until the first request's deadline
+                long deadline = first.submitted + maxDelay;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Request request = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (request == null) {
+                        break;
+                    }
+                    batch.add(request);
+                }
+
+                predict(batch, workspace);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            closed = true;
+        }
+
+        // only left over if interrupted
+        for (Request request : batch) {
+            reject(request, "Server is closed");
+        }
+        for (Request request; (request = queue.poll()) != null;) {
+            reject(request, "Server is closed");
+        }
+    }
+
+    private void predict(List<Request> batch, BatchWorkspace workspace) {
+        int inputSize = model.getInputSize(), outputSize = model.getOutputSize();
+        double[] input = workspace.getInput();
+
+        for (int row = 0; row < batch.size(); row++) {
+            System.arraycopy(batch.get(row).input, 0, input, row * inputSize, inputSize);
+        }
+        metrics.recordBatch(batch.size());
+
+        double[] output;
+        try {
+            output = model.predict(input, batch.size(), workspace);
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                metrics.recordFailed();
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        long now = System.nanoTime();
+        for (int row = 0; row < batch.size(); row++) {
+            Request request = batch.get(row);
+            metrics.recordRequest(now - request.submitted);
+            request.future.complete(Arrays.copyOfRange(output, row * outputSize, (row + 1) * outputSize));
+        }
+    }
+
+    private CompletableFuture<double[]> reject(Request request, String message) {
+        metrics.recordRejected();
+        request.future.completeExceptionally(new RejectedExecutionException(message));
+        return request.future;
+    }
+
+    private static class Request {
+        private final double[] input;
+        private final long submitted = System.nanoTime();
+        private final CompletableFuture<double[]> future = new CompletableFuture<>();
+
+        private Request(double[] input) {
+            this.input = input;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.tomallton.neuralnetwork.serving;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.tomallton.neuralnetwork.FrozenNeuralNetwork;
+import com.tomallton.neuralnetwork.Workspace;
+
+/**
+ * Scores every row read from a source and writes the predictions to a sink, overlapping I/O with computation. Reading
+ * and writing run on virtual threads when the JDK supports them and on platform threads otherwise, while predictions
+ * run on a fixed pool sized to the cores. Stages are joined by bounded queues, so a slow sink holds back prediction and
+ * prediction holds back reading.
+ * <p>
+ * Rows reach the sink in the order they finish, not the order they were read, and are identified by their index in
+ * the source.
+ */
+public class ScoringPipeline {
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+    private static final Row END = new Row(-1, null);
+
+    private final FrozenNeuralNetwork model;
+    private final int computeThreads, sinkThreads, queueCapacity;
+
+    public ScoringPipeline(FrozenNeuralNetwork model) {
+        this(model, Runtime.getRuntime().availableProcessors(), 1, 1024);
+    }
+
+    /**
+     * @param computeThreads The number of threads predicting rows.
+     * @param sinkThreads The number of threads writing predictions, which may block on I/O independently.
+     * @param queueCapacity The number of rows each queue between stages holds before blocking the stage before it.
+     */
+    public ScoringPipeline(FrozenNeuralNetwork model, int computeThreads, int sinkThreads, int queueCapacity) {
+        if (computeThreads < 1 || sinkThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Thread counts and queue capacity must be positive");
+        }
+        this.model = model;
+        this.computeThreads = computeThreads;
+        this.sinkThreads = sinkThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Scores every row in the source, returning once all predictions have been written. If any stage fails, the others
+     * are interrupted and the first failure is thrown.
+     *
+     * @return The number of rows scored.
+     */
+    public long run(Source source, Sink sink) throws IOException, InterruptedException {
+        return new Execution(source, sink).run();
+    }
+
+    /**
+     * Whether I/O stages run on virtual threads, which needs JDK 21 or later.
+     */
+    public static boolean usesVirtualThreads() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    private static ExecutorService newIoExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // fall back to platform threads
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    private static Method virtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * Reads the next row, or returns null once there are no more rows.
+         */
+        double[] read() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Writes the prediction for a row. Called concurrently when the pipeline has several sink threads.
+         *
+         * @param index The position of the row in the source.
+         */
+        void write(long index, double[] input, double[] output) throws IOException;
+    }
+
+    // one run of the pipeline, owning its threads and queues
+    private class Execution {
+        private final Source source;
+        private final Sink sink;
+        private final BlockingQueue<Row> inputs = new ArrayBlockingQueue<>(queueCapacity), outputs = new ArrayBlockingQueue<>(queueCapacity);
+        private final ExecutorService io = newIoExecutor(), compute = Executors.newFixedThreadPool(computeThreads);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicInteger runningPredictors = new AtomicInteger(computeThreads);
+
+        private Execution(Source source, Sink sink) {
+            this.source = source;
+            this.sink = sink;
+        }
+
+        private long run() throws IOException, InterruptedException {
+            try {
+                Future<Long> reader = io.submit(stage(this::read));
+                List<Future<?>> predictors = new ArrayList<>();
+                for (int i = 0; i < computeThreads; i++) {
+                    predictors.add(compute.submit(stage(this::predict)));
+                }
+                List<Future<?>> writers = new ArrayList<>();
+                for (int i = 0; i < sinkThreads; i++) {
+                    writers.add(io.submit(stage(this::write)));
+                }
+
+                // the writers finish last, and only this thread is never interrupted when a stage fails, so it must not
+                // block on a queue a failed stage will never drain
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+                for (Future<?> predictor : predictors) {
+                    predictor.get();
+                }
+                return reader.get();
+            } catch (ExecutionException | CancellationException | InterruptedException e) {
+                if (failure.get() != null) {
+                    throw rethrow(failure.get());
+                } else if (e instanceof InterruptedException) {
+                    throw (InterruptedException) e;
+                }
+                throw new IllegalStateException(e);
+            } finally {
+                io.shutdownNow();
+                compute.shutdownNow();
+            }
+        }
+
+        private Long read() throws IOException, InterruptedException {
+            long index = 0;
+            for (double[] x; (x = source.read()) != null; index++) {
+                inputs.put(new Row(index, x));
+            }
+            for (int i = 0; i < computeThreads; i++) {
+                inputs.put(END);
+            }
+            return index;
+        }
+
+        private Void predict() throws InterruptedException {
+            Workspace workspace = model.newWorkspace();
+            for (Row row; (row = inputs.take()) != END;) {
+                row.output = model.predictInto(row.input, new double[model.getOutputSize()], workspace);
+                outputs.put(row);
+            }
+            if (runningPredictors.decrementAndGet() == 0) {
+                for (int i = 0; i < sinkThreads; i++) {
+                    outputs.put(END);
+                }
+            }
+            return null;
+        }
+
+        private Void write() throws IOException, InterruptedException {
+            for (Row row; (row = outputs.take()) != END;) {
+                sink.write(row.index, row.input, row.output);
+            }
+            return null;
+        }
+
+        // records the first failure of any stage and interrupts the rest
+        private <T> Callable<T> stage(Callable<T> stage) {
+            return () -> {
+                try {
+                    return stage.call();
+                } catch (Throwable e) {
+                    if (failure.compareAndSet(null, e)) {
+                        io.shutdownNow();
+                        compute.shutdownNow();
+                    }
+                    throw e;
+                }
+            };
+        }
+
+        private IllegalStateException rethrow(Throwable failure) throws IOException, InterruptedException {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            } else if (failure instanceof InterruptedException) {
+                throw (InterruptedException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            return new IllegalStateException(failure);
+        }
+    }
+
+    private static class Row {
+        private final long index;
+        private final double[] input;
+        private double[] output;
+
+        private Row(long index, double[] input) {
+            this.index = index;
+            this.input = input;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.tomallton.neuralnetwork.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implementations of the innermost loops of the network, which every matrix and activation operation is built on.
+ */
+public interface Kernels {
+
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    /**
+     * Gets the dot product of an array and doubles stored in a buffer, such as off-heap weights, in the buffer's byte
+     * order. Buffer offsets are counted in doubles.
+     */
+    double dot(double[] a, int aOffset, ByteBuffer b, int bOffset, int length);
+
+    void axpy(double alpha, ByteBuffer x, int xOffset, double[] y, int yOffset, int length);
+
+    void axpy(double alpha, double[] x, int xOffset, ByteBuffer y, int yOffset, int length);
+
+    /**
+     * Gets the dot product of a sparse vector, the non-zero {@code values[from..to)} at {@code indices[from..to)}, and
+     * a dense vector starting at {@code yOffset}.
+     */
+    double dot(double[] values, int[] indices, int from, int to, double[] y, int yOffset);
+
+    /**
+     * Adds a sparse vector multiplied by {@code alpha} to a dense vector starting at {@code yOffset}. The indices must
+     * be distinct.
+     */
+    void axpy(double alpha, double[] values, int[] indices, int from, int to, double[] y, int yOffset);
+
+    /**
+     * Gets the dot product of a sparse vector and doubles stored in a buffer, in the buffer's byte order. Buffer offsets
+     * are counted in doubles.
+     */
+    double dot(double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset);
+
+    void axpy(double alpha, double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset);
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    /**
+     * Gets the dot product of 2 vectors of 8-bit integers, accumulated in 32 bits.
+     */
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    void relu(double[] x, int from, int to);
+
+    void leakyRelu(double[] x, int from, int to, double slope);
+
+    void sigmoid(double[] x, int from, int to);
+
+    void tanh(double[] x, int from, int to);
+
+    /**
+     * Gets kernels using plain scalar loops, which work on every JVM.
+     */
+    public static Kernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    /**
+     * Gets SIMD kernels built on the incubating Vector API if the jdk.incubator.vector module has been added, such as
+     * with {@code --add-modules jdk.incubator.vector}, and the system property {@code neuralnetwork.simd} is not false.
+     * Otherwise gets the scalar kernels.
+     */
+    public static Kernels load() {
+        if (!Boolean.parseBoolean(System.getProperty("neuralnetwork.simd", "true")) || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return scalar();
+        }
+        try {
+            return (Kernels) Class.forName("com.tomallton.neuralnetwork.util.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError exception) {
+            return scalar();
+        }
+    }
+}
\ No newline at end of file
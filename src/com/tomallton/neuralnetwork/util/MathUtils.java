@@ -1,31 +1,44 @@
 package com.tomallton.neuralnetwork.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+import com.tomallton.neuralnetwork.data.DatasetView;
+import com.tomallton.neuralnetwork.data.StandardScaler;
 
 public class MathUtils {
+    // tile size of the matrix multiplication kernels, chosen so that tiles of all three matrices fit in cache together
+    private static final int BLOCK_SIZE = 64;
+
+    private static final Kernels KERNELS = Kernels.load();
+
+    /**
+     * Gets the kernels every vector and matrix operation here runs on, see {@link Kernels#load()}.
+     */
+    public static Kernels getKernels() {
+        return KERNELS;
+    }
 
-    public static double[] generate(int length, Supplier<Double> valueGenerator) {
+    public static double[] generate(int length, DoubleSupplier valueGenerator) {
         double[] arr = new double[length];
         for (int i = 0; i < length; i++) {
-            arr[i] = valueGenerator.get();
+            arr[i] = valueGenerator.getAsDouble();
         }
         return arr;
     }
 
-    public static double[][] apply(double[][] a, Function<Double, Double> function) {
+    public static double[][] apply(double[][] a, DoubleUnaryOperator function) {
         for (int i = 0; i < a.length; i++) {
             a[i] = apply(a[i], function);
         }
         return a;
     }
 
-    public static double[] apply(double[] a, Function<Double, Double> function) {
+    public static double[] apply(double[] a, DoubleUnaryOperator function) {
         for (int i = 0; i < a.length; i++) {
-            a[i] = function.apply(a[i]);
+            a[i] = function.applyAsDouble(a[i]);
         }
         return a;
     }
@@ -118,21 +131,164 @@ public class MathUtils {
     }
 
     /**
-     * Normalizes a dataset, subtracting the mean from each value and diving by the standard deviation.
+     * Gets the dot product of {@code length} elements of 2 vectors, starting at the given offsets.
      */
-    public static double[][] normalize(double[][] a) {
-        double[] mean = mean(a);
-        double[] standardDeviation = standardDeviation(a);
+    public static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        return KERNELS.dot(a, aOffset, b, bOffset, length);
+    }
 
+    /**
+     * Adds {@code alpha} times {@code length} elements of x to y, starting at the given offsets.
+     */
+    public static void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        KERNELS.axpy(alpha, x, xOffset, y, yOffset, length);
+    }
+
+    /**
+     * Gets the dot product of {@code length} elements of an array and of doubles stored in a buffer, with the buffer
+     * offset counted in doubles.
+     */
+    public static double dot(double[] a, int aOffset, ByteBuffer b, int bOffset, int length) {
+        return KERNELS.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static void axpy(double alpha, ByteBuffer x, int xOffset, double[] y, int yOffset, int length) {
+        KERNELS.axpy(alpha, x, xOffset, y, yOffset, length);
+    }
+
+    public static void axpy(double alpha, double[] x, int xOffset, ByteBuffer y, int yOffset, int length) {
+        KERNELS.axpy(alpha, x, xOffset, y, yOffset, length);
+    }
+
+    /**
+     * Gets the dot product of a sparse vector, with non-zero {@code values[from..to)} at {@code indices[from..to)}, and
+     * a dense vector starting at {@code yOffset}.
+     */
+    public static double dot(double[] values, int[] indices, int from, int to, double[] y, int yOffset) {
+        return KERNELS.dot(values, indices, from, to, y, yOffset);
+    }
+
+    public static void axpy(double alpha, double[] values, int[] indices, int from, int to, double[] y, int yOffset) {
+        KERNELS.axpy(alpha, values, indices, from, to, y, yOffset);
+    }
+
+    public static double dot(double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset) {
+        return KERNELS.dot(values, indices, from, to, y, yOffset);
+    }
+
+    public static void axpy(double alpha, double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset) {
+        KERNELS.axpy(alpha, values, indices, from, to, y, yOffset);
+    }
+
+    /**
+     * Gets the dot product of {@code length} elements of 2 single-precision vectors, starting at the given offsets.
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNELS.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Adds {@code alpha} times {@code length} elements of single-precision x to y, starting at the given offsets.
+     */
+    public static void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        KERNELS.axpy(alpha, x, xOffset, y, yOffset, length);
+    }
+
+    public static float[] toFloat(double[] a) {
+        float[] floats = new float[a.length];
         for (int i = 0; i < a.length; i++) {
-            double[] example = a[i];
+            floats[i] = (float) a[i];
+        }
+        return floats;
+    }
+
+    public static double[] toDouble(float[] a) {
+        double[] doubles = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            doubles[i] = a[i];
+        }
+        return doubles;
+    }
 
-            for (int j = 0; j < example.length; j++) {
-                example[j] = (example[j] - mean[j]) / standardDeviation[j];
+    /**
+     * Adds A * B^T to C, where A is m x k, B is n x k and C is m x n. Matrices are stored row-major from the given offsets,
+     * with consecutive rows separated by the leading dimensions lda, ldb and ldc.
+     */
+    public static void multiplyTransposed(int m, int n, int k, double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb, double[] c, int cOffset, int ldc) {
+        for (int ii = 0; ii < m; ii += BLOCK_SIZE) {
+            int iEnd = Math.min(ii + BLOCK_SIZE, m);
+
+            for (int jj = 0; jj < n; jj += BLOCK_SIZE) {
+                int jEnd = Math.min(jj + BLOCK_SIZE, n);
+
+                for (int pp = 0; pp < k; pp += BLOCK_SIZE) {
+                    int length = Math.min(BLOCK_SIZE, k - pp);
+
+                    for (int i = ii; i < iEnd; i++) {
+                        for (int j = jj; j < jEnd; j++) {
+                            c[cOffset + i * ldc + j] += dot(a, aOffset + i * lda + pp, b, bOffset + j * ldb + pp, length);
+                        }
+                    }
+                }
             }
         }
+    }
 
-        return a;
+    /**
+     * Adds A * B to C, where A is m x k, B is k x n and C is m x n. See
+     * {@link #multiplyTransposed(int, int, int, double[], int, int, double[], int, int, double[], int, int)} for the
+     * storage layout.
+     */
+    public static void multiply(int m, int n, int k, double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb, double[] c, int cOffset, int ldc) {
+        for (int ii = 0; ii < m; ii += BLOCK_SIZE) {
+            int iEnd = Math.min(ii + BLOCK_SIZE, m);
+
+            for (int pp = 0; pp < k; pp += BLOCK_SIZE) {
+                int pEnd = Math.min(pp + BLOCK_SIZE, k);
+
+                for (int jj = 0; jj < n; jj += BLOCK_SIZE) {
+                    int length = Math.min(BLOCK_SIZE, n - jj);
+
+                    for (int i = ii; i < iEnd; i++) {
+                        for (int p = pp; p < pEnd; p++) {
+                            axpy(a[aOffset + i * lda + p], b, bOffset + p * ldb + jj, c, cOffset + i * ldc + jj, length);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds A^T * B to C, where A is k x m, B is k x n and C is m x n. See
+     * {@link #multiplyTransposed(int, int, int, double[], int, int, double[], int, int, double[], int, int)} for the
+     * storage layout.
+     */
+    public static void transposeMultiply(int m, int n, int k, double[] a, int aOffset, int lda, double[] b, int bOffset, int ldb, double[] c, int cOffset, int ldc) {
+        for (int ii = 0; ii < m; ii += BLOCK_SIZE) {
+            int iEnd = Math.min(ii + BLOCK_SIZE, m);
+
+            for (int pp = 0; pp < k; pp += BLOCK_SIZE) {
+                int pEnd = Math.min(pp + BLOCK_SIZE, k);
+
+                for (int jj = 0; jj < n; jj += BLOCK_SIZE) {
+                    int length = Math.min(BLOCK_SIZE, n - jj);
+
+                    for (int i = ii; i < iEnd; i++) {
+                        for (int p = pp; p < pEnd; p++) {
+                            axpy(a[aOffset + p * lda + i], b, bOffset + p * ldb + jj, c, cOffset + i * ldc + jj, length);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Normalizes a dataset, subtracting the mean from each value and diving by the standard deviation.
+     */
+    public static double[][] normalize(double[][] a) {
+        return new StandardScaler(a[0].length).fit(a).transform(a);
     }
 
     public static double[] mean(double[][] a) {
@@ -161,9 +317,9 @@ public class MathUtils {
             }
         }
 
-        for (int i = 0; i < mean.length; i++) {
-            mean[i] /= a.length;
-            mean[i] = Math.sqrt(mean[i]);
+        for (int i = 0; i < standardDeviation.length; i++) {
+            standardDeviation[i] /= a.length;
+            standardDeviation[i] = Math.sqrt(standardDeviation[i]);
         }
 
         return standardDeviation;
@@ -210,33 +366,14 @@ public class MathUtils {
     }
 
     public static Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> trainTestSplit(double[][] X, double[][] y, double testProportion) {
-        if (X.length != y.length) {
-            throw new IllegalArgumentException("Length of arrays are not the same");
-        }
-
-        List<Pair<double[], double[]>> examples = new ArrayList<>();
-        for (int i = 0; i < X.length; i++) {
-            examples.add(Pair.of(X[i], y[i]));
-        }
-        Collections.shuffle(examples);
-
-        int testSize = (int) Math.round(testProportion * examples.size());
-
-        double[][] xTrain = new double[X.length - testSize][];
-        double[][] xTest = new double[testSize][];
-
-        double[][] yTrain = new double[xTrain.length][];
-        double[][] yTest = new double[xTest.length][];
-
-        for (int i = 0; i < xTest.length; i++) {
-            xTest[i] = examples.get(i).getLeft();
-            yTest[i] = examples.get(i).getRight();
-        }
-        for (int i = 0; i < xTrain.length; i++) {
-            xTrain[i] = examples.get(testSize + i).getLeft();
-            yTrain[i] = examples.get(testSize + i).getRight();
-        }
+        return trainTestSplit(X, y, testProportion, new SplittableRandom().nextLong());
+    }
 
-        return Pair.of(Pair.of(xTrain, yTrain), Pair.of(xTest, yTest));
+    /**
+     * Splits examples randomly but reproducibly into training and test sets, sharing rather than copying their rows.
+     */
+    public static Pair<Pair<double[][], double[][]>, Pair<double[][], double[][]>> trainTestSplit(double[][] X, double[][] y, double testProportion, long seed) {
+        DatasetView[] split = DatasetView.of(X, y).shuffled(seed).split(1 - testProportion, testProportion);
+        return Pair.of(split[0].toArrays(), split[1].toArrays());
     }
 }
\ No newline at end of file
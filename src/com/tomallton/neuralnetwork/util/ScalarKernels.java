@@ -0,0 +1,133 @@
+package com.tomallton.neuralnetwork.util;
+
+import java.nio.ByteBuffer;
+
+class ScalarKernels implements Kernels {
+    static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, ByteBuffer b, int bOffset, int length) {
+        double dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[aOffset + i] * b.getDouble((bOffset + i) * Double.BYTES);
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(double alpha, ByteBuffer x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x.getDouble((xOffset + i) * Double.BYTES);
+        }
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, ByteBuffer y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int index = (yOffset + i) * Double.BYTES;
+            y.putDouble(index, y.getDouble(index) + alpha * x[xOffset + i]);
+        }
+    }
+
+    @Override
+    public double dot(double[] values, int[] indices, int from, int to, double[] y, int yOffset) {
+        double dot = 0;
+        for (int i = from; i < to; i++) {
+            dot += values[i] * y[yOffset + indices[i]];
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] values, int[] indices, int from, int to, double[] y, int yOffset) {
+        for (int i = from; i < to; i++) {
+            y[yOffset + indices[i]] += alpha * values[i];
+        }
+    }
+
+    @Override
+    public double dot(double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset) {
+        double dot = 0;
+        for (int i = from; i < to; i++) {
+            dot += values[i] * y.getDouble((yOffset + indices[i]) * Double.BYTES);
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset) {
+        for (int i = from; i < to; i++) {
+            int index = (yOffset + indices[i]) * Double.BYTES;
+            y.putDouble(index, y.getDouble(index) + alpha * values[i]);
+        }
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int dot = 0;
+        for (int i = 0; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public void relu(double[] x, int from, int to) {
+        for (int i = from; i < to; i++) {
+            x[i] = Math.max(x[i], 0);
+        }
+    }
+
+    @Override
+    public void leakyRelu(double[] x, int from, int to, double slope) {
+        for (int i = from; i < to; i++) {
+            x[i] = Math.max(slope * x[i], x[i]);
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] x, int from, int to) {
+        for (int i = from; i < to; i++) {
+            x[i] = 1 / (1 + Math.exp(-x[i]));
+        }
+    }
+
+    @Override
+    public void tanh(double[] x, int from, int to) {
+        for (int i = from; i < to; i++) {
+            x[i] = Math.tanh(x[i]);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.tomallton.neuralnetwork.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels using the widest SIMD registers of the CPU. Loaded reflectively by {@link Kernels#load()}, so that this class
+ * is never linked when the jdk.incubator.vector module is missing. Remainders shorter than a vector use scalar loops.
+ * Sums are accumulated per lane, so results differ from the scalar kernels by rounding only.
+ * <p>
+ * Compiling this class also needs {@code --add-modules jdk.incubator.vector}, which the Maven build passes to javac, the
+ * test runs and the forked benchmark JVMs.
+ */
+class VectorKernels implements Kernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // bytes loaded with as many lanes as there are ints, or 64 bits' worth when ints are narrower than 256 bits, as no
+    // shape is narrower than 64 bits; each load is widened into one or more int vectors
+    private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, INTS.vectorBitSize() / 4)));
+    private static final int BYTE_PARTS = BYTES.length() / INTS.length();
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            sum = sum.add(DoubleVector.fromArray(DOUBLES, a, aOffset + i).mul(DoubleVector.fromArray(DOUBLES, b, bOffset + i)));
+        }
+        double dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, x, xOffset + i).mul(alpha).add(DoubleVector.fromArray(DOUBLES, y, yOffset + i)).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public double dot(double[] a, int aOffset, ByteBuffer b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        ByteOrder order = b.order();
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            sum = sum.add(DoubleVector.fromArray(DOUBLES, a, aOffset + i).mul(DoubleVector.fromByteBuffer(DOUBLES, b, (bOffset + i) * Double.BYTES, order)));
+        }
+        double dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += a[aOffset + i] * b.getDouble((bOffset + i) * Double.BYTES);
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(double alpha, ByteBuffer x, int xOffset, double[] y, int yOffset, int length) {
+        ByteOrder order = x.order();
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromByteBuffer(DOUBLES, x, (xOffset + i) * Double.BYTES, order).mul(alpha).add(DoubleVector.fromArray(DOUBLES, y, yOffset + i)).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x.getDouble((xOffset + i) * Double.BYTES);
+        }
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, ByteBuffer y, int yOffset, int length) {
+        ByteOrder order = y.order();
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(length); i < bound; i += DOUBLES.length()) {
+            int index = (yOffset + i) * Double.BYTES;
+            DoubleVector.fromArray(DOUBLES, x, xOffset + i).mul(alpha).add(DoubleVector.fromByteBuffer(DOUBLES, y, index, order)).intoByteBuffer(y, index, order);
+        }
+        for (; i < length; i++) {
+            int index = (yOffset + i) * Double.BYTES;
+            y.putDouble(index, y.getDouble(index) + alpha * x[xOffset + i]);
+        }
+    }
+
+    @Override
+    public double dot(double[] values, int[] indices, int from, int to, double[] y, int yOffset) {
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            sum = sum.add(DoubleVector.fromArray(DOUBLES, values, i).mul(DoubleVector.fromArray(DOUBLES, y, yOffset, indices, i)));
+        }
+        double dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            dot += values[i] * y[yOffset + indices[i]];
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] values, int[] indices, int from, int to, double[] y, int yOffset) {
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            // distinct indices, so no lane scatters over another's write
+            DoubleVector.fromArray(DOUBLES, values, i).mul(alpha).add(DoubleVector.fromArray(DOUBLES, y, yOffset, indices, i)).intoArray(y, yOffset, indices, i);
+        }
+        for (; i < to; i++) {
+            y[yOffset + indices[i]] += alpha * values[i];
+        }
+    }
+
+    // the Vector API only gathers from arrays, so gathering from a buffer is left to scalar loads
+    @Override
+    public double dot(double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset) {
+        return ScalarKernels.INSTANCE.dot(values, indices, from, to, y, yOffset);
+    }
+
+    @Override
+    public void axpy(double alpha, double[] values, int[] indices, int from, int to, ByteBuffer y, int yOffset) {
+        ScalarKernels.INSTANCE.axpy(alpha, values, indices, from, to, y, yOffset);
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            sum = sum.add(FloatVector.fromArray(FLOATS, a, aOffset + i).mul(FloatVector.fromArray(FLOATS, b, bOffset + i)));
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, x, xOffset + i).mul(alpha).add(FloatVector.fromArray(FLOATS, y, yOffset + i)).intoArray(y, yOffset + i);
+        }
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = BYTES.loopBound(length); i < bound; i += BYTES.length()) {
+            ByteVector x = ByteVector.fromArray(BYTES, a, aOffset + i), y = ByteVector.fromArray(BYTES, b, bOffset + i);
+            for (int part = 0; part < BYTE_PARTS; part++) {
+                sum = sum.add(((IntVector) x.convertShape(VectorOperators.B2I, INTS, part)).mul((IntVector) y.convertShape(VectorOperators.B2I, INTS, part)));
+            }
+        }
+        int dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            dot += a[aOffset + i] * b[bOffset + i];
+        }
+        return dot;
+    }
+
+    @Override
+    public void relu(double[] x, int from, int to) {
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, x, i).max(0).intoArray(x, i);
+        }
+        for (; i < to; i++) {
+            x[i] = Math.max(x[i], 0);
+        }
+    }
+
+    @Override
+    public void leakyRelu(double[] x, int from, int to, double slope) {
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, x, i);
+            v.mul(slope).max(v).intoArray(x, i);
+        }
+        for (; i < to; i++) {
+            x[i] = Math.max(slope * x[i], x[i]);
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] x, int from, int to) {
+        DoubleVector one = DoubleVector.broadcast(DOUBLES, 1);
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            one.div(DoubleVector.fromArray(DOUBLES, x, i).neg().lanewise(VectorOperators.EXP).add(1)).intoArray(x, i);
+        }
+        for (; i < to; i++) {
+            x[i] = 1 / (1 + Math.exp(-x[i]));
+        }
+    }
+
+    @Override
+    public void tanh(double[] x, int from, int to) {
+        int i = from;
+        for (int bound = from + DOUBLES.loopBound(to - from); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, x, i).lanewise(VectorOperators.TANH).intoArray(x, i);
+        }
+        for (; i < to; i++) {
+            x[i] = Math.tanh(x[i]);
+        }
+    }
+}
\ No newline at end of file